@@ -0,0 +1,115 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Minimal benchmark harness: runs an operation for a warmup period, then
+ * for a measurement period, and reports the time and the bytes allocated
+ * per operation by the benchmark thread.
+ * The allocation is read from the HotSpot ThreadMXBean, when the JVM
+ * does not support it the allocation column shows n/a.
+ */
+public final class BenchmarkRunner {
+
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private final long warmupMillis;
+    private final long measureMillis;
+
+    public BenchmarkRunner(long warmupMillis, long measureMillis) {
+        this.warmupMillis = warmupMillis;
+        this.measureMillis = measureMillis;
+    }
+
+    /**
+     * Runner configured from the system properties bench.warmup and
+     * bench.measure (milliseconds).
+     */
+    public static BenchmarkRunner fromSystemProperties() {
+        return new BenchmarkRunner(Long.getLong("bench.warmup", 1000), Long.getLong("bench.measure", 3000));
+    }
+
+    public static void printHeader() {
+        System.out.printf("%-48s %12s %12s %14s %12s%n", "benchmark", "ops", "us/op", "bytes/op", "MB/s");
+    }
+
+    /**
+     * Run and print one benchmark.
+     *
+     * @param name name printed in the report
+     * @param op the operation, called repeatedly on the current thread
+     */
+    public Result run(String name, Runnable op) {
+        long end = System.nanoTime() + warmupMillis * 1000000L;
+        while (System.nanoTime() < end) {
+            op.run();
+        }
+
+        long ops = 0;
+        long bytes0 = allocatedBytes();
+        long start = System.nanoTime();
+        end = start + measureMillis * 1000000L;
+        long now;
+        do {
+            op.run();
+            ops++;
+            now = System.nanoTime();
+        } while (now < end);
+        long bytes1 = allocatedBytes();
+
+        Result result = new Result(name, ops, now - start, bytes0 < 0 ? -1 : bytes1 - bytes0);
+        System.out.println(result);
+        return result;
+    }
+
+    private static long allocatedBytes() {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Result of one benchmark.
+     */
+    public static final class Result {
+        private final String name;
+        private final long ops;
+        private final long nanos;
+        private final long bytes;
+
+        Result(String name, long ops, long nanos, long bytes) {
+            this.name = name;
+            this.ops = ops;
+            this.nanos = nanos;
+            this.bytes = bytes;
+        }
+
+        public double getNanosPerOp() {
+            return (double) nanos / ops;
+        }
+
+        /**
+         * @return bytes allocated per operation, negative when unknown
+         */
+        public double getBytesPerOp() {
+            return bytes < 0 ? -1 : (double) bytes / ops;
+        }
+
+        /**
+         * @return allocation rate in MB per second, negative when unknown
+         */
+        public double getAllocationRate() {
+            return bytes < 0 ? -1 : bytes / 1e6 / (nanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            String perOp = bytes < 0 ? "n/a" : String.format("%.1f", getBytesPerOp());
+            String rate = bytes < 0 ? "n/a" : String.format("%.1f", getAllocationRate());
+            return String.format("%-48s %12d %12.3f %14s %12s", name, ops, getNanosPerOp() / 1000, perOp, rate);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+/**
+ * Runs every benchmark that does not need the native OpenCV library, and
+ * {@link DetectorsBenchmark} and {@link ContourFinderBenchmark} too when
+ * -Dbench.opencv=true.
+ * The duration of each benchmark is set with -Dbench.warmup and
+ * -Dbench.measure (milliseconds).
+ * Run with: java Benchmarks
+ */
+public class Benchmarks {
+
+    public static void main(String[] args) {
+        BenchmarkRunner runner = BenchmarkRunner.fromSystemProperties();
+        KalmanFilterBenchmark.run(runner);
+        HungarianAlgorithmBenchmark.run(runner);
+        SpatialGridBenchmark.run(runner);
+        TrackerBenchmark.run(runner, new int[]{10, 100, 1000, 10000});
+        if (Boolean.getBoolean("bench.opencv")) {
+            DetectorsBenchmark.main(new String[0]);
+            ContourFinderBenchmark.run(runner, 2160, 2000);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Scaling of {@link ContourFinder} with the number of threads, on a
+ * generated edge image of blob outlines. Each thread count runs with four
+ * bands per thread and is checked against the single threaded result.
+ * Needs the native OpenCV library.
+ * Run with: java -Djava.library.path=... ContourFinderBenchmark [height] [blobs]
+ */
+public class ContourFinderBenchmark {
+
+    public static void main(String[] args) {
+        // load the native OpenCV library
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+        int height = args.length > 0 ? Integer.parseInt(args[0]) : 2160;
+        int blobs = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        run(BenchmarkRunner.fromSystemProperties(), height, blobs);
+    }
+
+    public static void run(BenchmarkRunner runner, int height, int blobs) {
+        int width = height * 16 / 9;
+        Mat edges = new Mat(height, width, CvType.CV_8UC1, new Scalar(0));
+        Random random = new Random(blobs);
+        for (int i = 0; i < blobs; i++) {
+            Point center = new Point(random.nextInt(width), random.nextInt(height));
+            Imgproc.circle(edges, center, 4 + random.nextInt(40), new Scalar(255), 1);
+        }
+
+        ContourFinder reference = new ContourFinder();
+        int expected = reference.find(edges);
+
+        BenchmarkRunner.printHeader();
+        runner.run(String.format("ContourFinder %dp threads=1", height), () -> reference.find(edges));
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int threads = 2; threads <= processors; threads *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            ContourFinder finder = new ContourFinder(pool, 4 * threads);
+            if (!same(reference, expected, finder, finder.find(edges))) {
+                System.err.println("Tiled contours differ from the single threaded ones with " + threads
+                        + " threads");
+            }
+            runner.run(String.format("ContourFinder %dp threads=%d", height, threads), () -> finder.find(edges));
+            finder.release();
+            pool.shutdown();
+        }
+        reference.release();
+        edges.release();
+    }
+
+    private static boolean same(ContourFinder a, int countA, ContourFinder b, int countB) {
+        if (countA != countB) {
+            return false;
+        }
+        for (int k = 0; k < countA; k++) {
+            if (a.getX(k) != b.getX(k) || a.getY(k) != b.getY(k) || a.getRadius(k) != b.getRadius(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
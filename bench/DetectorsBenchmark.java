@@ -0,0 +1,87 @@
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Benchmark of {@link Detectors#detect(Mat, DetectionBatch)} on generated 540p
+ * frames of blobs moving over a dark background. Needs the native OpenCV
+ * library. One operation copies a generated frame into the working frame
+ * and runs the detection on it, on the whole frame, on the limit
+ * rectangle, then on the limit rectangle with a downscaled background.
+ * Run with: java -Djava.library.path=... DetectorsBenchmark [blobs]
+ */
+public class DetectorsBenchmark {
+
+    static final int FRAMES = 100;
+
+    public static void main(String[] args) {
+        // load the native OpenCV library
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+        int blobs = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        run(BenchmarkRunner.fromSystemProperties(), blobs);
+    }
+
+    public static void run(BenchmarkRunner runner, int blobs) {
+        final ArrayList<Mat> frames = generate(blobs, 960, 540);
+        final Mat work = new Mat();
+        final int[] frame = {0};
+
+        BenchmarkRunner.printHeader();
+        // whole frame, limit rectangle, limit rectangle at half resolution
+        Rect limit = Detectors.getLimit("540p");
+        Rect[] regions = {null, limit, limit};
+        double[] scales = {1, 1, 0.5};
+        for (int c = 0; c < regions.length; c++) {
+            try (Detectors detectors = new Detectors()) {
+                if (regions[c] != null) {
+                    detectors.addRegion(regions[c]);
+                }
+                detectors.setScale(scales[c]);
+                String name = String.format("Detectors.detect 540p blobs=%d %s scale=%.2f", blobs,
+                        regions[c] == null ? "frame" : "roi", scales[c]);
+                DetectionBatch batch = new DetectionBatch();
+                runner.run(name, () -> {
+                    frames.get(frame[0]++ % FRAMES).copyTo(work);
+                    detectors.detect(work, batch);
+                });
+                System.out.println("native bytes of the detector: " + detectors.getNativeBytes());
+            }
+        }
+        work.release();
+        for (Mat generated : frames) {
+            generated.release();
+        }
+    }
+
+    /**
+     * @return FRAMES frames of the blobs moving over a dark background
+     */
+    static ArrayList<Mat> generate(int blobs, int width, int height) {
+        Random random = new Random(blobs);
+        double[] x = new double[blobs], y = new double[blobs], vx = new double[blobs], vy = new double[blobs];
+        for (int i = 0; i < blobs; i++) {
+            x[i] = random.nextDouble() * width;
+            y[i] = random.nextDouble() * height;
+            vx[i] = random.nextGaussian() * 3;
+            vy[i] = random.nextGaussian() * 3;
+        }
+        ArrayList<Mat> frames = new ArrayList<>(FRAMES);
+        for (int f = 0; f < FRAMES; f++) {
+            Mat frame = new Mat(height, width, CvType.CV_8UC3, new Scalar(20, 20, 20));
+            for (int i = 0; i < blobs; i++) {
+                x[i] = (x[i] + vx[i] + width) % width;
+                y[i] = (y[i] + vy[i] + height) % height;
+                Imgproc.circle(frame, new Point(x[i], y[i]), 12, new Scalar(230, 230, 230), -1);
+            }
+            frames.add(frame);
+        }
+        return frames;
+    }
+}
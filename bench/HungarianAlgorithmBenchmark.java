@@ -0,0 +1,122 @@
+import java.util.Random;
+
+/**
+ * Benchmark of the assignment solvers across matrix sizes and sparsity,
+ * sparsity being the fraction of the pairs inside the gate. The dense
+ * {@link HungarianAlgorithm} gets the pairs outside the gate at a
+ * prohibitive cost, {@link SparseAssignment} only gets the gated pairs.
+ * The tracking cases assign the tracks of a 1080p frame to their
+ * detections, some of them missed, leaving a track unassigned at a
+ * prohibitive cost, then at the gate threshold like the Tracker.
+ * Run with: java HungarianAlgorithmBenchmark
+ */
+public class HungarianAlgorithmBenchmark {
+
+    // largest cost of a pair of the tracking cases, the gate of a Tracker(50, ...),
+    // and the cost of leaving one of its tracks unassigned
+    static final double TRACK_GATE = 50;
+
+    // cost of the pairs outside the gate of the random matrices
+    static final double PROHIBITIVE = 1e6;
+
+    public static void main(String[] args) {
+        run(BenchmarkRunner.fromSystemProperties());
+    }
+
+    public static void run(BenchmarkRunner runner) {
+        BenchmarkRunner.printHeader();
+        for (int n : new int[]{10, 50, 100, 200, 500}) {
+            for (double sparsity : new double[]{0.05, 0.25, 1.0}) {
+                final double[][] dense = randomCosts(n, sparsity);
+                final SparseCostMatrix sparse = gated(dense);
+
+                String suffix = String.format(" n=%d gated=%.2f", n, sparsity);
+                runner.run("HungarianAlgorithm.execute" + suffix, () -> new HungarianAlgorithm(dense).execute());
+                final SparseAssignment solver = new SparseAssignment();
+                final int[] assignment = new int[n];
+                runner.run("SparseAssignment.execute" + suffix, () -> solver.execute(sparse, assignment));
+            }
+        }
+
+        for (int n : new int[]{300, 1000, 3000}) {
+            for (double miss : new double[]{0, 0.05}) {
+                final SparseCostMatrix sparse = trackScene(n, miss, TRACK_GATE);
+                final SparseAssignment solver = new SparseAssignment();
+                final int[] assignment = new int[n];
+                String suffix = String.format(" tracks=%d miss=%.2f", n, miss);
+                final double big = SparseAssignment.prohibitiveCost(sparse);
+                runner.run("SparseAssignment.execute" + suffix, () -> solver.execute(sparse, assignment, big));
+                runner.run("SparseAssignment.execute gate" + suffix,
+                        () -> solver.execute(sparse, assignment, TRACK_GATE));
+            }
+        }
+    }
+
+    /**
+     * Random costs in [0, 100) of n workers and n jobs, the pairs outside
+     * the gate costing {@link #PROHIBITIVE}.
+     *
+     * @param sparsity fraction of the pairs inside the gate
+     */
+    static double[][] randomCosts(int n, double sparsity) {
+        Random random = new Random(n);
+        double[][] dense = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                double cost = random.nextDouble() * 100;
+                dense[i][j] = random.nextDouble() < sparsity ? cost : PROHIBITIVE;
+            }
+        }
+        return dense;
+    }
+
+    /**
+     * @return the pairs of the dense costs inside the gate
+     */
+    static SparseCostMatrix gated(double[][] dense) {
+        SparseCostMatrix sparse = new SparseCostMatrix();
+        sparse.reset(dense.length, dense[0].length);
+        for (int i = 0; i < dense.length; i++) {
+            for (int j = 0; j < dense[i].length; j++) {
+                if (dense[i][j] < PROHIBITIVE) {
+                    sparse.add(i, j, dense[i][j]);
+                }
+            }
+        }
+        return sparse;
+    }
+
+    /**
+     * Gated costs of tracks spread over a 1080p frame to their detections,
+     * 2 pixels away, a pair costing half its distance.
+     *
+     * @param miss fraction of the tracks whose detection is missed
+     * @param gate largest cost of a pair
+     */
+    static SparseCostMatrix trackScene(int tracks, double miss, double gate) {
+        Random random = new Random(tracks);
+        double[] tx = new double[tracks], ty = new double[tracks];
+        double[] dx = new double[tracks], dy = new double[tracks];
+        int detections = 0;
+        for (int i = 0; i < tracks; i++) {
+            tx[i] = random.nextDouble() * 1920;
+            ty[i] = random.nextDouble() * 1080;
+            if (random.nextDouble() >= miss) {
+                dx[detections] = tx[i] + random.nextGaussian() * 2;
+                dy[detections] = ty[i] + random.nextGaussian() * 2;
+                detections++;
+            }
+        }
+        SparseCostMatrix costs = new SparseCostMatrix();
+        costs.reset(tracks, detections);
+        for (int i = 0; i < tracks; i++) {
+            for (int j = 0; j < detections; j++) {
+                double cost = 0.5 * Math.hypot(tx[i] - dx[j], ty[i] - dy[j]);
+                if (cost <= gate) {
+                    costs.add(i, j, cost);
+                }
+            }
+        }
+        return costs;
+    }
+}
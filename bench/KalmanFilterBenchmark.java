@@ -0,0 +1,42 @@
+/**
+ * Benchmark of the Kalman filter: predict and correct of a single
+ * {@link KalmanFilter}, and the batch prediction of a {@link TrackStore}.
+ * Run with: java KalmanFilterBenchmark
+ */
+public class KalmanFilterBenchmark {
+
+    public static void main(String[] args) {
+        run(BenchmarkRunner.fromSystemProperties());
+    }
+
+    public static void run(BenchmarkRunner runner) {
+        BenchmarkRunner.printHeader();
+
+        final KalmanFilter filter = new KalmanFilter();
+        final int[] frame = {0};
+        runner.run("KalmanFilter.predict", filter::predict);
+        runner.run("KalmanFilter.correct", () -> {
+            frame[0]++;
+            filter.correct(frame[0] % 640, frame[0] % 480, true);
+        });
+        runner.run("KalmanFilter.predict+correct", () -> {
+            frame[0]++;
+            filter.predict();
+            filter.correct(frame[0] % 640, frame[0] % 480, true);
+        });
+
+        for (int n : new int[]{1000, 10000}) {
+            final TrackStore store = new TrackStore(n);
+            for (int i = 0; i < n; i++) {
+                store.add(i, i % 640, i % 480);
+            }
+            runner.run("TrackStore.predictAll n=" + n, () -> store.predictAll(0.005));
+            runner.run("TrackStore.correct (all slots) n=" + n, () -> {
+                frame[0]++;
+                for (int i = 0; i < store.size(); i++) {
+                    store.correct(i, (i + frame[0]) % 640, i % 480);
+                }
+            });
+        }
+    }
+}
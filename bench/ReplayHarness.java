@@ -0,0 +1,144 @@
+import org.opencv.core.Point;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a {@link SceneGenerator} scene through a {@link Tracker} and
+ * reports the frame rate and the latency percentiles of
+ * {@link Tracker#Update(ArrayList)}.
+ * <p>
+ * The frames are generated before the replay, so only the tracker is
+ * measured. At maximum speed the frames are fed back to back; in real
+ * time each frame is fed at its timestamp at the target rate, and a
+ * frame whose update ends after the timestamp of the next one counts as
+ * late. The checksum of the tracks depends only on the seed and the
+ * settings, two runs with the same ones must print the same checksum.
+ * <p>
+ * Run with: java ReplayHarness [objects] [frames] [fps] [max|realtime] [seed]
+ * and the system properties replay.width, replay.height, replay.miss,
+ * replay.clutter (false alarms per frame), replay.births, replay.deaths,
+ * replay.turns and replay.occlusions.
+ */
+public class ReplayHarness {
+
+    private final Tracker tracker;
+    private final ArrayList<ArrayList<Point>> frames;
+    private final long[] timestamps;
+
+    private long[] latencies;
+    private long wallNanos;
+    private int late;
+
+    public ReplayHarness(Tracker tracker, SceneGenerator scene, int frames) {
+        this.tracker = tracker;
+        this.frames = new ArrayList<>(frames);
+        this.timestamps = new long[frames];
+        long first = scene.getFrame() + 1;
+        for (int f = 0; f < frames; f++) {
+            this.frames.add(scene.nextFrame());
+            timestamps[f] = scene.timestampNanos(first + f) - scene.timestampNanos(first);
+        }
+    }
+
+    /**
+     * Feed every frame to the tracker.
+     *
+     * @param realTime wait for the timestamp of each frame when true
+     */
+    public void replay(boolean realTime) {
+        latencies = new long[frames.size()];
+        late = 0;
+        long start = System.nanoTime();
+        for (int f = 0; f < frames.size(); f++) {
+            if (realTime) {
+                long due = start + timestamps[f];
+                long wait;
+                while ((wait = due - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            ArrayList<Point> detections = frames.get(f);
+            long t0 = System.nanoTime();
+            // an empty frame is not fed, as in the video controller
+            if (detections.size() > 0) {
+                tracker.Update(detections);
+            }
+            long t1 = System.nanoTime();
+            latencies[f] = t1 - t0;
+            if (realTime && f + 1 < frames.size() && t1 - start > timestamps[f + 1]) {
+                late++;
+            }
+        }
+        wallNanos = System.nanoTime() - start;
+    }
+
+    public double getFps() {
+        return frames.size() * 1e9 / wallNanos;
+    }
+
+    /**
+     * @return number of frames whose update ended after the next frame was due
+     */
+    public int getLate() {
+        return late;
+    }
+
+    /**
+     * @param p percentile, between 0 and 100
+     * @return the latency of the percentile of the last replay (ns)
+     */
+    public long percentile(double p) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(p / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /**
+     * @return a digest of the ids and positions of the current tracks
+     */
+    public long checksum() {
+        long sum = tracker.getTracks().size();
+        for (Track track : tracker.getTracks()) {
+            sum = 31 * sum + track.getTrack_id();
+            sum = 31 * sum + Double.doubleToLongBits(track.getX());
+            sum = 31 * sum + Double.doubleToLongBits(track.getY());
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) {
+        int objects = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        double fps = args.length > 2 ? Double.parseDouble(args[2]) : 30;
+        boolean realTime = args.length > 3 && args[3].equals("realtime");
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 42;
+
+        double width = Double.parseDouble(System.getProperty("replay.width", "1920"));
+        double height = Double.parseDouble(System.getProperty("replay.height", "1080"));
+        SceneGenerator scene = new SceneGenerator(seed, objects, width, height, fps);
+        scene.setMissRate(Double.parseDouble(System.getProperty("replay.miss", "0.05")));
+        scene.setFalseAlarms(Double.parseDouble(System.getProperty("replay.clutter", "0")));
+        scene.setDeathRate(Double.parseDouble(System.getProperty("replay.deaths", "0")));
+        scene.setTurnRate(Double.parseDouble(System.getProperty("replay.turns", "0.01")));
+        scene.setOcclusion(Double.parseDouble(System.getProperty("replay.occlusions", "0.005")), 10);
+        String births = System.getProperty("replay.births");
+        if (births == null) {
+            scene.balanceBirthRate();
+        } else {
+            scene.setBirthRate(Double.parseDouble(births));
+        }
+
+        ReplayHarness harness = new ReplayHarness(new Tracker(50, 30, 300, 0), scene, count);
+        harness.replay(realTime);
+
+        System.out.printf("objects=%d frames=%d seed=%d mode=%s%n", objects, count, seed,
+                realTime ? "realtime" : "max");
+        System.out.printf("fps=%.1f target=%.1f late=%d%n", harness.getFps(), fps, harness.getLate());
+        System.out.printf("update p50=%dus p99=%dus p999=%dus max=%dus%n", harness.percentile(50) / 1000,
+                harness.percentile(99) / 1000, harness.percentile(99.9) / 1000, harness.percentile(100) / 1000);
+        System.out.printf("tracks=%d checksum=%016x%n", harness.tracker.getTracks().size(), harness.checksum());
+    }
+}
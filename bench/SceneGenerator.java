@@ -0,0 +1,270 @@
+import org.opencv.core.Point;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Deterministic generator of ground truth trajectories and of the
+ * detections a detector would report for them, to load test the tracker
+ * without a video. The same seed and settings always give the same
+ * frames.
+ * <p>
+ * Objects move at constant velocity and some of them turn at a constant
+ * rate for a while. New objects are born at the border of the area and
+ * objects die, either at random or when they leave the area. An object
+ * may be occluded for a few frames, during which it is not detected, and
+ * a detected object may still be missed. False alarms are spread
+ * uniformly over the area. Every rate is per frame.
+ */
+public class SceneGenerator {
+
+    private final Random random;
+    private final double width, height;
+    private final double fps;
+
+    private double speed = 2;            // mean speed (px per frame)
+    private double noise = 1;            // detection noise (px)
+    private double missRate = 0.05;      // probability to miss a visible object
+    private double falseAlarms = 0;      // mean number of false alarms
+    private double birthRate = 0;        // mean number of births
+    private double deathRate = 0;        // probability of death of an object
+    private double turnRate = 0.01;      // probability that an object starts a turn
+    private double occlusionRate = 0.005; // probability that an object gets occluded
+    private int occlusionFrames = 10;    // mean duration of an occlusion
+
+    private int size;
+    private int[] ids = new int[16];
+    private double[] x = new double[16], y = new double[16];
+    private double[] vx = new double[16], vy = new double[16];
+    private double[] turn = new double[16];     // turn rate (rad per frame), 0 when straight
+    private int[] turnFrames = new int[16];
+    private int[] occludedFrames = new int[16];
+    private int nextId;
+    private long frame;
+
+    /**
+     * @param seed seed of the random generator
+     * @param objects number of objects at the first frame
+     * @param width width of the area (px)
+     * @param height height of the area (px)
+     * @param fps frame rate, gives the timestamp of the frames
+     */
+    public SceneGenerator(long seed, int objects, double width, double height, double fps) {
+        this.random = new Random(seed);
+        this.width = width;
+        this.height = height;
+        this.fps = fps;
+        for (int i = 0; i < objects; i++) {
+            spawn(random.nextDouble() * width, random.nextDouble() * height, random.nextDouble() * 2 * Math.PI);
+        }
+    }
+
+    public void setSpeed(double speed) {
+        this.speed = speed;
+    }
+
+    public void setNoise(double noise) {
+        this.noise = noise;
+    }
+
+    public void setMissRate(double missRate) {
+        this.missRate = missRate;
+    }
+
+    public void setFalseAlarms(double falseAlarms) {
+        this.falseAlarms = falseAlarms;
+    }
+
+    public void setBirthRate(double birthRate) {
+        this.birthRate = birthRate;
+    }
+
+    public void setDeathRate(double deathRate) {
+        this.deathRate = deathRate;
+    }
+
+    public void setTurnRate(double turnRate) {
+        this.turnRate = turnRate;
+    }
+
+    public void setOcclusion(double occlusionRate, int occlusionFrames) {
+        this.occlusionRate = occlusionRate;
+        this.occlusionFrames = occlusionFrames;
+    }
+
+    /**
+     * Set the birth rate balancing the deaths and the objects leaving the
+     * area, so the number of objects stays about the current one.
+     */
+    public void balanceBirthRate() {
+        // isotropic objects of density d and mean speed s cross a border of
+        // length L at a rate of d * s * L / pi
+        double density = size / (width * height);
+        double leaving = density * speed * 2 * (width + height) / Math.PI;
+        birthRate = size * deathRate + leaving;
+    }
+
+    /**
+     * @return number of objects alive
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of frames generated so far
+     */
+    public long getFrame() {
+        return frame;
+    }
+
+    /**
+     * @return timestamp of the given frame at the target rate
+     */
+    public long timestampNanos(long frame) {
+        return (long) (frame * 1e9 / fps);
+    }
+
+    /**
+     * Move every object one frame and return the detections of the frame.
+     */
+    public ArrayList<Point> nextFrame() {
+        frame++;
+
+        // Births at the border, heading inside
+        int births = poisson(birthRate);
+        for (int b = 0; b < births; b++) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    spawn(0, random.nextDouble() * height, 0);
+                    break;
+                case 1:
+                    spawn(width, random.nextDouble() * height, Math.PI);
+                    break;
+                case 2:
+                    spawn(random.nextDouble() * width, 0, Math.PI / 2);
+                    break;
+                default:
+                    spawn(random.nextDouble() * width, height, -Math.PI / 2);
+                    break;
+            }
+        }
+
+        ArrayList<Point> detections = new ArrayList<>(size + (int) falseAlarms + 1);
+        for (int i = 0; i < size; i++) {
+            // Turns
+            if (turnFrames[i] == 0 && random.nextDouble() < turnRate) {
+                turn[i] = random.nextGaussian() * 0.05;
+                turnFrames[i] = 10 + random.nextInt(50);
+            }
+            if (turnFrames[i] > 0) {
+                double cos = Math.cos(turn[i]), sin = Math.sin(turn[i]);
+                double nvx = vx[i] * cos - vy[i] * sin;
+                vy[i] = vx[i] * sin + vy[i] * cos;
+                vx[i] = nvx;
+                turnFrames[i]--;
+            }
+            x[i] += vx[i];
+            y[i] += vy[i];
+
+            // Deaths, at random or out of the area
+            if (random.nextDouble() < deathRate || x[i] < 0 || x[i] > width || y[i] < 0 || y[i] > height) {
+                remove(i);
+                i--;
+                continue;
+            }
+
+            // Occlusions and missed detections
+            if (occludedFrames[i] == 0 && random.nextDouble() < occlusionRate) {
+                occludedFrames[i] = 1 + poisson(occlusionFrames - 1);
+            }
+            if (occludedFrames[i] > 0) {
+                occludedFrames[i]--;
+                continue;
+            }
+            if (random.nextDouble() >= missRate) {
+                detections.add(new Point(x[i] + random.nextGaussian() * noise, y[i] + random.nextGaussian() * noise));
+            }
+        }
+
+        int alarms = poisson(falseAlarms);
+        for (int k = 0; k < alarms; k++) {
+            detections.add(new Point(random.nextDouble() * width, random.nextDouble() * height));
+        }
+        return detections;
+    }
+
+    /**
+     * @param frames number of frames
+     * @return the detections of the next frames
+     */
+    public ArrayList<ArrayList<Point>> nextFrames(int frames) {
+        ArrayList<ArrayList<Point>> batches = new ArrayList<>(frames);
+        for (int f = 0; f < frames; f++) {
+            batches.add(nextFrame());
+        }
+        return batches;
+    }
+
+    private void spawn(double px, double py, double heading) {
+        if (size == ids.length) {
+            int capacity = 2 * size;
+            ids = Arrays.copyOf(ids, capacity);
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            vx = Arrays.copyOf(vx, capacity);
+            vy = Arrays.copyOf(vy, capacity);
+            turn = Arrays.copyOf(turn, capacity);
+            turnFrames = Arrays.copyOf(turnFrames, capacity);
+            occludedFrames = Arrays.copyOf(occludedFrames, capacity);
+        }
+        // heading spread by up to +/- 60 degrees
+        double angle = heading + (random.nextDouble() - 0.5) * 2 * Math.PI / 3;
+        double v = speed * (0.5 + random.nextDouble());
+        int i = size++;
+        ids[i] = nextId++;
+        x[i] = px;
+        y[i] = py;
+        vx[i] = v * Math.cos(angle);
+        vy[i] = v * Math.sin(angle);
+        turn[i] = 0;
+        turnFrames[i] = 0;
+        occludedFrames[i] = 0;
+    }
+
+    /**
+     * Remove object i by moving the last one in its place.
+     */
+    private void remove(int i) {
+        int last = --size;
+        ids[i] = ids[last];
+        x[i] = x[last];
+        y[i] = y[last];
+        vx[i] = vx[last];
+        vy[i] = vy[last];
+        turn[i] = turn[last];
+        turnFrames[i] = turnFrames[last];
+        occludedFrames[i] = occludedFrames[last];
+    }
+
+    /**
+     * Poisson distributed count, Knuth's method for small means and the
+     * normal approximation for large ones.
+     */
+    private int poisson(double mean) {
+        if (mean <= 0) {
+            return 0;
+        }
+        if (mean > 30) {
+            return (int) Math.max(0, Math.round(mean + Math.sqrt(mean) * random.nextGaussian()));
+        }
+        double limit = Math.exp(-mean), p = 1;
+        int k = 0;
+        do {
+            k++;
+            p *= random.nextDouble();
+        } while (p > limit);
+        return k - 1;
+    }
+}
@@ -0,0 +1,72 @@
+import java.util.Random;
+
+/**
+ * Benchmark of the cost construction of {@link Tracker}: brute force over
+ * every track/detection pair against the {@link SpatialGrid} lookup, for
+ * scenes from 100 to 20k objects at a constant density.
+ * Run with: java SpatialGridBenchmark
+ */
+public class SpatialGridBenchmark {
+
+    private static final double SPACING = 40;   // mean distance between objects (px)
+    private static final double GATE = 60;      // gate radius (px)
+
+    public static void main(String[] args) {
+        run(BenchmarkRunner.fromSystemProperties());
+    }
+
+    public static void run(BenchmarkRunner runner) {
+        int[] sizes = {100, 500, 1000, 2000, 5000, 10000, 20000};
+
+        BenchmarkRunner.printHeader();
+        for (final int n : sizes) {
+            Random random = new Random(n);
+            double side = Math.sqrt(n) * SPACING;
+            final double[] tx = new double[n], ty = new double[n];
+            final double[] dx = new double[n], dy = new double[n];
+            for (int i = 0; i < n; i++) {
+                tx[i] = random.nextDouble() * side;
+                ty[i] = random.nextDouble() * side;
+                dx[i] = tx[i] + random.nextGaussian() * 3;
+                dy[i] = ty[i] + random.nextGaussian() * 3;
+            }
+
+            final SparseCostMatrix costs = new SparseCostMatrix();
+            final SpatialGrid grid = new SpatialGrid();
+            runner.run("cost construction brute force n=" + n, () -> brute(tx, ty, dx, dy, costs));
+            runner.run("cost construction SpatialGrid n=" + n, () -> gridded(tx, ty, dx, dy, costs, grid));
+        }
+    }
+
+    private static void brute(double[] tx, double[] ty, double[] dx, double[] dy, SparseCostMatrix costs) {
+        int n = tx.length;
+        costs.reset(n, n);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                double ex = tx[i] - dx[j], ey = ty[i] - dy[j];
+                double distance = Math.sqrt(ex * ex + ey * ey);
+                if (distance <= GATE) {
+                    costs.add(i, j, distance * 0.5);
+                }
+            }
+        }
+    }
+
+    private static void gridded(double[] tx, double[] ty, double[] dx, double[] dy,
+                                SparseCostMatrix costs, SpatialGrid grid) {
+        int n = tx.length;
+        grid.build(dx, dy, n, GATE);
+        costs.reset(n, n);
+        for (int i = 0; i < n; i++) {
+            int found = grid.query(tx[i], ty[i], GATE);
+            for (int k = 0; k < found; k++) {
+                int j = grid.found(k);
+                double ex = tx[i] - dx[j], ey = ty[i] - dy[j];
+                double distance = Math.sqrt(ex * ex + ey * ey);
+                if (distance <= GATE) {
+                    costs.add(i, j, distance * 0.5);
+                }
+            }
+        }
+    }
+}
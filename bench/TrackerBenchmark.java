@@ -0,0 +1,66 @@
+import org.opencv.core.Point;
+
+import java.util.ArrayList;
+
+/**
+ * Benchmark of {@link Tracker#Update(ArrayList)} on synthetic scenes of 10
+ * to 10k objects. One operation is the update of one frame.
+ * The scene is configured with the system properties:
+ * bench.density (objects per megapixel, default 500), bench.miss
+ * (missed detection rate, default 0.05) and bench.clutter (false alarms
+ * per frame as a fraction of the objects, default 0.02).
+ * Run with: java TrackerBenchmark [objects...]
+ */
+public class TrackerBenchmark {
+
+    private static final int FRAMES = 200;
+
+    public static void main(String[] args) {
+        int[] sizes = {10, 100, 1000, 10000};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        run(BenchmarkRunner.fromSystemProperties(), sizes);
+    }
+
+    public static void run(BenchmarkRunner runner, int[] sizes) {
+        double density = Double.parseDouble(System.getProperty("bench.density", "500"));
+        double miss = Double.parseDouble(System.getProperty("bench.miss", "0.05"));
+        double clutter = Double.parseDouble(System.getProperty("bench.clutter", "0.02"));
+
+        BenchmarkRunner.printHeader();
+        for (int n : sizes) {
+            // detections are generated up front so only the tracker is measured
+            final ArrayList<ArrayList<Point>> frames = scene(n, density, miss, clutter, n).nextFrames(FRAMES);
+            final Tracker[] tracker = {null};
+            final int[] frame = {FRAMES};
+            runner.run(String.format("Tracker.Update n=%d miss=%.2f clutter=%.2f", n, miss, clutter), () -> {
+                if (frame[0] == FRAMES) {
+                    // replay the scene from the start with fresh tracks
+                    tracker[0] = new Tracker(50, 30, 300, 0);
+                    frame[0] = 0;
+                }
+                tracker[0].Update(frames.get(frame[0]++));
+            });
+        }
+    }
+
+    /**
+     * Scene of a square area holding about the given number of objects.
+     *
+     * @param density objects per megapixel, gives the side of the area
+     * @param miss probability that an object is not detected in a frame
+     * @param clutter false alarms per frame, as a fraction of the objects
+     */
+    static SceneGenerator scene(int objects, double density, double miss, double clutter, long seed) {
+        double side = Math.sqrt(objects / density * 1e6);
+        SceneGenerator scene = new SceneGenerator(seed, objects, side, side, 30);
+        scene.setMissRate(miss);
+        scene.setFalseAlarms(objects * clutter);
+        scene.balanceBirthRate();
+        return scene;
+    }
+}
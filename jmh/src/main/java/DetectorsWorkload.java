@@ -0,0 +1,49 @@
+import jmh.Workload;
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+
+import java.util.ArrayList;
+
+/**
+ * {@link Detectors#detect(Mat, DetectionBatch)} of generated 540p frames
+ * of size blobs, see {@link DetectorsBenchmark}. The settings are 1 to
+ * detect in the limit rectangle, 0 in the whole frame, and the scale of
+ * the background model. One operation copies a generated frame into the
+ * working frame and detects its blobs.
+ * <p>
+ * Needs the native OpenCV library, from -Djava.library.path or else from
+ * the OpenCV jar when it holds the natives.
+ */
+public class DetectorsWorkload implements Workload {
+
+    private final Mat work = new Mat();
+    private final DetectionBatch batch = new DetectionBatch();
+    private ArrayList<Mat> frames;
+    private Detectors detectors;
+    private int frame;
+
+    static {
+        try {
+            System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+        } catch (UnsatisfiedLinkError e) {
+            nu.pattern.OpenCV.loadLocally();
+        }
+    }
+
+    @Override
+    public void setUp(int size, double... settings) {
+        frames = DetectorsBenchmark.generate(size, 960, 540);
+        detectors = new Detectors();
+        if (settings[0] != 0) {
+            detectors.addRegion(Detectors.getLimit("540p"));
+        }
+        detectors.setScale(settings[1]);
+    }
+
+    @Override
+    public double run() {
+        frames.get(frame++ % DetectorsBenchmark.FRAMES).copyTo(work);
+        detectors.detect(work, batch);
+        return batch.size();
+    }
+}
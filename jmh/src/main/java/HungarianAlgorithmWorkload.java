@@ -0,0 +1,24 @@
+import jmh.Workload;
+
+/**
+ * {@link HungarianAlgorithm#execute()} of a random square matrix of size
+ * workers, the setting being the fraction of the pairs inside the gate,
+ * the others costing a prohibitive cost, see
+ * {@link HungarianAlgorithmBenchmark#randomCosts(int, double)}. The
+ * algorithm copies the matrix, so one operation includes its
+ * construction.
+ */
+public class HungarianAlgorithmWorkload implements Workload {
+
+    private double[][] costs;
+
+    @Override
+    public void setUp(int size, double... settings) {
+        costs = HungarianAlgorithmBenchmark.randomCosts(size, settings[0]);
+    }
+
+    @Override
+    public double run() {
+        return new HungarianAlgorithm(costs).execute()[0];
+    }
+}
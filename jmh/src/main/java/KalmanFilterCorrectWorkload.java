@@ -0,0 +1,23 @@
+import jmh.Workload;
+
+/**
+ * {@link KalmanFilter#correct(double, double, boolean)} of a single filter
+ * with an observation a pixel further than the previous one, the size and
+ * the settings are not used.
+ */
+public class KalmanFilterCorrectWorkload implements Workload {
+
+    private final KalmanFilter filter = new KalmanFilter();
+    private int frame;
+
+    @Override
+    public void setUp(int size, double... settings) {
+    }
+
+    @Override
+    public double run() {
+        frame++;
+        filter.correct(frame % 640, frame % 480, true);
+        return filter.getX();
+    }
+}
@@ -0,0 +1,20 @@
+import jmh.Workload;
+
+/**
+ * {@link KalmanFilter#predict()} of a single filter, the size and the
+ * settings are not used.
+ */
+public class KalmanFilterPredictWorkload implements Workload {
+
+    private final KalmanFilter filter = new KalmanFilter();
+
+    @Override
+    public void setUp(int size, double... settings) {
+    }
+
+    @Override
+    public double run() {
+        filter.predict();
+        return filter.getX();
+    }
+}
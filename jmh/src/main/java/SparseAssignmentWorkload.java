@@ -0,0 +1,28 @@
+import jmh.Workload;
+
+/**
+ * {@link SparseAssignment#execute(SparseCostMatrix, int[], double)} of the
+ * tracks of a 1080p frame to their detections, the setting being the
+ * fraction of the tracks whose detection is missed, see
+ * {@link HungarianAlgorithmBenchmark#trackScene(int, double, double)}. The
+ * pairs are gated and priced like the default gate of a Tracker(50, ...),
+ * which leaves a track unassigned at the gate threshold.
+ */
+public class SparseAssignmentWorkload implements Workload {
+
+    private final SparseAssignment solver = new SparseAssignment();
+    private SparseCostMatrix costs;
+    private int[] assignment;
+
+    @Override
+    public void setUp(int size, double... settings) {
+        costs = HungarianAlgorithmBenchmark.trackScene(size, settings[0], HungarianAlgorithmBenchmark.TRACK_GATE);
+        assignment = new int[size];
+    }
+
+    @Override
+    public double run() {
+        solver.execute(costs, assignment, HungarianAlgorithmBenchmark.TRACK_GATE);
+        return assignment[0];
+    }
+}
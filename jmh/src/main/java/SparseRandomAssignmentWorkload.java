@@ -0,0 +1,27 @@
+import jmh.Workload;
+
+/**
+ * {@link SparseAssignment#execute(SparseCostMatrix, int[], double)} of the
+ * gated pairs of the random matrix of {@link HungarianAlgorithmWorkload},
+ * the setting being the fraction of the pairs inside the gate.
+ */
+public class SparseRandomAssignmentWorkload implements Workload {
+
+    private final SparseAssignment solver = new SparseAssignment();
+    private SparseCostMatrix costs;
+    private int[] assignment;
+    private double big;
+
+    @Override
+    public void setUp(int size, double... settings) {
+        costs = HungarianAlgorithmBenchmark.gated(HungarianAlgorithmBenchmark.randomCosts(size, settings[0]));
+        assignment = new int[size];
+        big = SparseAssignment.prohibitiveCost(costs);
+    }
+
+    @Override
+    public double run() {
+        solver.execute(costs, assignment, big);
+        return assignment[0];
+    }
+}
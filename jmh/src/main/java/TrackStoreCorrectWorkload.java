@@ -0,0 +1,29 @@
+import jmh.Workload;
+
+/**
+ * {@link TrackStore#correct(int, double, double)} of every track of a
+ * store of size tracks, each with an observation a few pixels further
+ * than the previous one; the settings are not used.
+ */
+public class TrackStoreCorrectWorkload implements Workload {
+
+    private TrackStore store;
+    private int frame;
+
+    @Override
+    public void setUp(int size, double... settings) {
+        store = new TrackStore(size);
+        for (int i = 0; i < size; i++) {
+            store.add(i, i % 640, i % 480);
+        }
+    }
+
+    @Override
+    public double run() {
+        frame++;
+        for (int i = 0; i < store.size(); i++) {
+            store.correct(i, (i + frame) % 640, i % 480);
+        }
+        return store.getX(0);
+    }
+}
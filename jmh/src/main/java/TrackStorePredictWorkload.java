@@ -0,0 +1,24 @@
+import jmh.Workload;
+
+/**
+ * {@link TrackStore#predictAll(double)} of a store of size tracks, the
+ * settings are not used.
+ */
+public class TrackStorePredictWorkload implements Workload {
+
+    private TrackStore store;
+
+    @Override
+    public void setUp(int size, double... settings) {
+        store = new TrackStore(size);
+        for (int i = 0; i < size; i++) {
+            store.add(i, i % 640, i % 480);
+        }
+    }
+
+    @Override
+    public double run() {
+        store.predictAll(0.005);
+        return store.getP00(0);
+    }
+}
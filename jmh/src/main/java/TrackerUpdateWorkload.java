@@ -0,0 +1,46 @@
+import jmh.Workload;
+import org.opencv.core.Point;
+
+import java.util.ArrayList;
+
+/**
+ * {@link Tracker#Update(DetectionBatch)} with the detections of one frame
+ * of a {@link SceneGenerator} scene of size objects, the settings being
+ * the density in objects per megapixel, the missed detection rate and the
+ * false alarms per frame as a fraction of the objects, see
+ * {@link TrackerBenchmark#scene(int, double, double, double, long)}. The
+ * 200 frames of the scene are generated up front and replayed from a
+ * fresh tracker.
+ */
+public class TrackerUpdateWorkload implements Workload {
+
+    private static final int FRAMES = 200;
+
+    private final ArrayList<DetectionBatch> frames = new ArrayList<>(FRAMES);
+    private Tracker tracker;
+    private int frame;
+
+    @Override
+    public void setUp(int size, double... settings) {
+        SceneGenerator scene = TrackerBenchmark.scene(size, settings[0], settings[1], settings[2], size);
+        for (int f = 0; f < FRAMES; f++) {
+            DetectionBatch batch = new DetectionBatch();
+            for (Point point : scene.nextFrame()) {
+                batch.add(point.x, point.y);
+            }
+            frames.add(batch);
+        }
+        frame = FRAMES;
+    }
+
+    @Override
+    public double run() {
+        if (frame == FRAMES) {
+            // replay the scene from the start with fresh tracks
+            tracker = new Tracker(50, 30, 300, 0);
+            frame = 0;
+        }
+        tracker.Update(frames.get(frame++));
+        return tracker.getStore().size();
+    }
+}
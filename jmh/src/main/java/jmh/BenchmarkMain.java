@@ -0,0 +1,26 @@
+package jmh;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Main class of target/benchmarks.jar: the JMH command line, with the GC
+ * profiler on unless another profiler is asked, so the allocation of an
+ * operation (gc.alloc.rate.norm, bytes/op) is reported next to its time.
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains("-prof") && !options.contains("-h") && !options.contains("-l")
+                && !options.contains("-lprof")) {
+            options.add(0, "-prof");
+            options.add(1, "gc");
+        }
+        org.openjdk.jmh.Main.main(options.toArray(new String[0]));
+    }
+}
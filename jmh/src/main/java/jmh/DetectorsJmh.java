@@ -0,0 +1,51 @@
+package jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detection of the blobs of generated 540p frames, in the whole frame or
+ * the limit rectangle, with the background model at full or half
+ * resolution, see DetectorsWorkload. Needs the native OpenCV library:
+ * java -Djava.library.path=... -jar jmh/target/benchmarks.jar DetectorsJmh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class DetectorsJmh {
+
+    @Param({"20", "200"})
+    private int blobs;
+
+    @Param({"frame", "roi"})
+    private String region;
+
+    @Param({"1", "0.5"})
+    private double scale;
+
+    private Workload detect;
+
+    @Setup
+    public void setUp() {
+        detect = Workload.load("DetectorsWorkload", blobs, "roi".equals(region) ? 1 : 0, scale);
+    }
+
+    @Benchmark
+    public double detect() {
+        return detect.run();
+    }
+}
@@ -0,0 +1,56 @@
+package jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The assignment solvers across matrix sizes and sparsity, sparsity being
+ * the fraction of the pairs inside the gate: the dense Hungarian algorithm
+ * with the pairs outside the gate at a prohibitive cost, and the sparse
+ * solver on the gated pairs, see
+ * HungarianAlgorithmWorkload and SparseRandomAssignmentWorkload.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class HungarianAlgorithmJmh {
+
+    @Param({"10", "50", "100", "200", "500"})
+    private int n;
+
+    @Param({"0.05", "0.25", "1.0"})
+    private double sparsity;
+
+    private Workload hungarian;
+    private Workload sparse;
+
+    @Setup
+    public void setUp() {
+        hungarian = Workload.load("HungarianAlgorithmWorkload", n, sparsity);
+        sparse = Workload.load("SparseRandomAssignmentWorkload", n, sparsity);
+    }
+
+    @Benchmark
+    public double hungarian() {
+        return hungarian.run();
+    }
+
+    @Benchmark
+    public double sparse() {
+        return sparse.run();
+    }
+}
@@ -0,0 +1,46 @@
+package jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prediction and correction of a single Kalman filter, see
+ * KalmanFilterPredictWorkload and KalmanFilterCorrectWorkload.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class KalmanFilterJmh {
+
+    private Workload predict;
+    private Workload correct;
+
+    @Setup
+    public void setUp() {
+        predict = Workload.load("KalmanFilterPredictWorkload", 1);
+        correct = Workload.load("KalmanFilterCorrectWorkload", 1);
+    }
+
+    @Benchmark
+    public double predict() {
+        return predict.run();
+    }
+
+    @Benchmark
+    public double correct() {
+        return correct.run();
+    }
+}
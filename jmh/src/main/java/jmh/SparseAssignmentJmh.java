@@ -0,0 +1,46 @@
+package jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold solve of the gated assignment of the tracks of a 1080p frame to
+ * their detections, some of them missed, see SparseAssignmentWorkload.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SparseAssignmentJmh {
+
+    @Param({"300", "1000", "3000"})
+    private int tracks;
+
+    @Param({"0", "0.05"})
+    private double miss;
+
+    private Workload solve;
+
+    @Setup
+    public void setUp() {
+        solve = Workload.load("SparseAssignmentWorkload", tracks, miss);
+    }
+
+    @Benchmark
+    public double solve() {
+        return solve.run();
+    }
+}
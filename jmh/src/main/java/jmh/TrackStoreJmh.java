@@ -0,0 +1,51 @@
+package jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kalman filter of every track of a store: the prediction of all the
+ * tracks in one pass, and the correction of each of them, see
+ * TrackStorePredictWorkload and TrackStoreCorrectWorkload.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class TrackStoreJmh {
+
+    @Param({"1000", "10000"})
+    private int tracks;
+
+    private Workload predict;
+    private Workload correct;
+
+    @Setup
+    public void setUp() {
+        predict = Workload.load("TrackStorePredictWorkload", tracks, 0);
+        correct = Workload.load("TrackStoreCorrectWorkload", tracks, 0);
+    }
+
+    @Benchmark
+    public double predictAll() {
+        return predict.run();
+    }
+
+    @Benchmark
+    public double correct() {
+        return correct.run();
+    }
+}
@@ -0,0 +1,55 @@
+package jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Update of the tracker with the detections of one frame of a synthetic
+ * scene of 10 to 10k objects, see TrackerUpdateWorkload. The density, in
+ * objects per megapixel, the missed detection rate and the clutter, false
+ * alarms per frame as a fraction of the objects, default to the ones of
+ * TrackerBenchmark; sweep them with e.g. -p density=100,500,2000.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class TrackerJmh {
+
+    @Param({"10", "100", "1000", "10000"})
+    private int objects;
+
+    @Param({"500"})
+    private double density;
+
+    @Param({"0.05"})
+    private double miss;
+
+    @Param({"0.02"})
+    private double clutter;
+
+    private Workload update;
+
+    @Setup
+    public void setUp() {
+        update = Workload.load("TrackerUpdateWorkload", objects, density, miss, clutter);
+    }
+
+    @Benchmark
+    public double update() {
+        return update.run();
+    }
+}
@@ -0,0 +1,43 @@
+package jmh;
+
+/**
+ * An operation of the tracker measured by a benchmark of this package.
+ * <p>
+ * JMH refuses benchmarks in the default package, where the classes of the
+ * tracker live, and a named package cannot refer to them. Each operation
+ * is therefore implemented by a class of the default package, loaded by
+ * name with {@link #load(String, int, double...)}; the benchmark only makes
+ * a monomorphic interface call, which the JIT inlines.
+ */
+public interface Workload {
+
+    /**
+     * Prepare the operation, the same settings always give the same data.
+     *
+     * @param size number of tracks, or of objects
+     * @param settings other settings, described by the implementation
+     */
+    void setUp(int size, double... settings);
+
+    /**
+     * Run the operation once.
+     *
+     * @return a value depending on the result, consumed by the benchmark
+     */
+    double run();
+
+    /**
+     * @param className class of the default package implementing the operation
+     * @return the workload, set up
+     */
+    static Workload load(String className, int size, double... settings) {
+        Workload workload;
+        try {
+            workload = Class.forName(className).asSubclass(Workload.class).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Impossible to load the workload " + className, e);
+        }
+        workload.setUp(size, settings);
+        return workload;
+    }
+}
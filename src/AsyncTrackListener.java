@@ -0,0 +1,80 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers the deltas of a tracker to a slow listener on its own thread.
+ * The deltas wait in a {@link BoundedQueue} which drops the oldest one
+ * when full, so {@link Tracker#Update} never waits for the listener. The
+ * delta following dropped ones reports how many were missed.
+ */
+public class AsyncTrackListener implements TrackListener, AutoCloseable {
+
+    private static final TrackDelta END = new TrackDelta(-1, 0);
+
+    private final TrackListener listener;
+    private final BoundedQueue<TrackDelta> queue;
+    private final AtomicLong missed = new AtomicLong();
+    private final Thread thread;
+
+    /**
+     * @param listener the listener, called on the delivery thread
+     * @param capacity number of deltas waiting at most
+     */
+    public AsyncTrackListener(TrackListener listener, int capacity) {
+        this.listener = listener;
+        this.queue = new BoundedQueue<>(capacity, Backpressure.DROP_OLDEST, delta -> missed.incrementAndGet());
+        this.thread = new Thread(this::deliver, "track-listener");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public void onDelta(TrackDelta delta) {
+        try {
+            queue.put(delta);
+        } catch (InterruptedException e) {
+            // never happens with DROP_OLDEST, keep the status for the caller
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return number of deltas dropped because the listener fell behind
+     */
+    public long getDropped() {
+        return queue.getDropped();
+    }
+
+    private void deliver() {
+        try {
+            TrackDelta delta;
+            while ((delta = queue.take()) != END) {
+                long dropped = missed.getAndSet(0);
+                if (dropped > 0) {
+                    delta = delta.withMissed(dropped);
+                }
+                try {
+                    listener.onDelta(delta);
+                } catch (RuntimeException e) {
+                    System.err.println("Exception in track listener: " + e);
+                }
+            }
+        } catch (InterruptedException e) {
+            // closed
+        }
+    }
+
+    /**
+     * Deliver the deltas already queued and stop the delivery thread.
+     */
+    @Override
+    public void close() {
+        try {
+            queue.putBlocking(END);
+            thread.join();
+        } catch (InterruptedException e) {
+            System.err.println("Interrupted while stopping the track listener: " + e);
+            thread.interrupt();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+/**
+ * What a {@link BoundedQueue} does with a new item when it is full.
+ */
+public enum Backpressure {
+    /** Wait until the consumer makes room, nothing is lost. */
+    BLOCK,
+    /** Drop the oldest queued item to make room, keeps latency low. */
+    DROP_OLDEST,
+    /** Drop the new item, keeps the queued items. */
+    DROP_NEWEST
+}
@@ -0,0 +1,294 @@
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.videoio.VideoCapture;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Offline processing of a video file as fast as the CPU allows, without
+ * display nor fixed frame rate, writing the tracks to a
+ * {@link HistoryStore}.
+ * <p>
+ * One thread decodes the file. The frames are cut in chunks of
+ * consecutive frames dealt in turn to the detection workers, so several
+ * frames are detected in parallel. A worker keeps its {@link Detectors}
+ * for the whole file; before each of its chunks it also gets the last
+ * warmup frames of the previous chunk, detected only to bring its
+ * background model up to date. The detections are put back in frame
+ * order before {@link Tracker#Update(DetectionBatch)} on the calling
+ * thread. The decoder never gets more than window frames ahead of the
+ * tracker, which bounds the memory: the window has to hold a chunk for
+ * every worker, or the workers wait for the decoder and take their
+ * chunks in turn.
+ * <p>
+ * A background model is learnt from consecutive frames, so the
+ * detections near the start of a chunk may differ slightly from a
+ * sequential run; with one worker the result is the sequential one.
+ * <p>
+ * When the decoder or a worker dies, e.g. of an Error, run() stops and
+ * throws its failure.
+ */
+public class BatchTracker {
+
+    private static final Job END = new Job(-1, null, false);
+    private static final DetectionBatch END_OF_FILE = new DetectionBatch();
+
+    private final Pipeline.FrameSource source;
+    private final DetectorFactory detectorFactory;
+    private final Tracker tracker;
+    private final HistoryStore history;
+    private final int workers;
+    private final int chunk;
+    private final int warmup;
+
+    private final Semaphore window;
+    private final Resequencer resequencer;
+    private final List<BoundedQueue<Job>> queues = new ArrayList<>();
+
+    /**
+     * @param detectorFactory gives each worker its detector
+     * @param history receives the tracks of every frame, null for none
+     * @param workers number of detection threads
+     * @param chunk number of consecutive frames given to a worker
+     * @param warmup number of frames of the previous chunk a worker detects
+     *               before its chunk, at most chunk
+     * @param window number of frames decoded ahead of the tracker at most,
+     *               at least workers * chunk
+     */
+    public BatchTracker(Pipeline.FrameSource source, DetectorFactory detectorFactory, Tracker tracker,
+                        HistoryStore history, int workers, int chunk, int warmup, int window) {
+        if (workers < 1 || chunk < 1 || window < 1) {
+            throw new IllegalArgumentException("Workers, chunk and window must be positive");
+        }
+        if (workers > 1 && window < (long) workers * chunk) {
+            throw new IllegalArgumentException("A window of " + window + " frames can not hold a chunk of " + chunk
+                    + " frames for each of the " + workers + " workers");
+        }
+        this.source = source;
+        this.detectorFactory = detectorFactory;
+        this.tracker = tracker;
+        this.history = history;
+        this.workers = workers;
+        this.chunk = chunk;
+        this.warmup = Math.max(0, Math.min(warmup, chunk));
+        this.window = new Semaphore(window);
+        this.resequencer = new Resequencer(window);
+        for (int w = 0; w < workers; w++) {
+            // a chunk and the warmup frames of the next one
+            queues.add(new BoundedQueue<>(chunk + this.warmup, Backpressure.BLOCK, null));
+        }
+    }
+
+    /**
+     * Process the whole source.
+     *
+     * @return number of frames processed
+     * @throws IOException when decoding or detecting a frame failed, with
+     *                     the failure of the thread as cause; an Error is
+     *                     thrown as is
+     */
+    public long run() throws InterruptedException, IOException {
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < workers; w++) {
+            int worker = w;
+            threads.add(new Thread(() -> detect(worker), "batch-detect-" + w));
+        }
+        threads.add(new Thread(this::decode, "batch-decode"));
+        for (Thread thread : threads) {
+            thread.setDaemon(true);
+            thread.start();
+        }
+        try {
+            long index = 0;
+            DetectionBatch detections;
+            while ((detections = resequencer.take(index)) != END_OF_FILE) {
+                // an empty batch still ages the tracks
+                tracker.Update(detections);
+                if (history != null) {
+                    history.append(index, tracker.getStore());
+                }
+                window.release();
+                index++;
+            }
+            return index;
+        } finally {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            // the workers release their detectors before run() returns
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+    }
+
+    private void decode() {
+        try {
+            long index = 0;
+            while (true) {
+                Mat image = new Mat();
+                if (!source.read(image) || image.empty()) {
+                    image.release();
+                    break;
+                }
+                window.acquire();
+                long c = index / chunk;
+                int owner = (int) (c % workers);
+                if (workers > 1 && index % chunk >= chunk - warmup) {
+                    // the worker of the next chunk learns its background
+                    queues.get((int) ((c + 1) % workers)).put(new Job(index, image.clone(), true));
+                }
+                queues.get(owner).put(new Job(index, image, false));
+                index++;
+            }
+            window.acquire();
+            resequencer.put(index, END_OF_FILE);
+            for (BoundedQueue<Job> queue : queues) {
+                queue.putBlocking(END);
+            }
+        } catch (InterruptedException e) {
+            // stopped
+        } catch (RuntimeException | Error e) {
+            // thrown by run()
+            resequencer.fail(e);
+        }
+    }
+
+    private void detect(int worker) {
+        String id = "batch-" + worker;
+        Detectors detectors = detectorFactory.acquire(id);
+        try {
+            BoundedQueue<Job> queue = queues.get(worker);
+            DetectionBatch warmupBatch = new DetectionBatch();
+            Job job;
+            while ((job = queue.take()) != END) {
+                DetectionBatch detections = job.warmup ? warmupBatch : new DetectionBatch();
+                try {
+                    detectors.detect(job.image, detections);
+                } catch (RuntimeException e) {
+                    System.err.println("Exception in detecting frame " + job.index + ": " + e);
+                    detections.clear();
+                }
+                job.image.release();
+                if (!job.warmup) {
+                    resequencer.put(job.index, detections);
+                }
+            }
+        } catch (InterruptedException e) {
+            // stopped
+        } catch (RuntimeException | Error e) {
+            // thrown by run()
+            resequencer.fail(e);
+        } finally {
+            detectorFactory.release(id, detectors);
+        }
+    }
+
+    /**
+     * A frame for a worker, detected for the tracker or only to learn the
+     * background.
+     */
+    private static final class Job {
+        final long index;
+        final Mat image;
+        final boolean warmup;
+
+        Job(long index, Mat image, boolean warmup) {
+            this.index = index;
+            this.image = image;
+            this.warmup = warmup;
+        }
+    }
+
+    /**
+     * Detections waiting for their turn, in a ring of the size of the
+     * window, or the failure of a thread that will never put its own.
+     */
+    private static final class Resequencer {
+        private final DetectionBatch[] slots;
+        private Throwable failure;
+
+        Resequencer(int size) {
+            this.slots = new DetectionBatch[size];
+        }
+
+        synchronized void put(long index, DetectionBatch detections) {
+            slots[(int) (index % slots.length)] = detections;
+            notifyAll();
+        }
+
+        synchronized void fail(Throwable e) {
+            if (failure == null) {
+                failure = e;
+            }
+            notifyAll();
+        }
+
+        synchronized DetectionBatch take(long index) throws InterruptedException, IOException {
+            int slot = (int) (index % slots.length);
+            while (slots[slot] == null) {
+                if (failure instanceof Error) {
+                    throw (Error) failure;
+                }
+                if (failure != null) {
+                    throw new IOException("Frame " + index + " will not be detected", failure);
+                }
+                wait();
+            }
+            DetectionBatch detections = slots[slot];
+            slots[slot] = null;
+            return detections;
+        }
+    }
+
+    /**
+     * Process a video file and write its tracks to a history directory.
+     * The detector is configured as in {@link VideoController}, e.g. with
+     * -Ddetector.scale=0.5. The window holds workers + 1 chunks, e.g. 150
+     * frames or 900 MB of 1080p frames for 4 workers and the default
+     * chunk of 30 frames.
+     */
+    public static void main(String[] args) throws InterruptedException, IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BatchTracker <video file> <history directory> [workers] [chunk] [warmup]");
+            return;
+        }
+        // load the native OpenCV library
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int chunk = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+        int warmup = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+
+        VideoCapture capture = new VideoCapture();
+        if (!capture.open(args[0])) {
+            System.err.println("Impossible to open " + args[0]);
+            return;
+        }
+        Supplier<Detectors> creator = () -> {
+            Detectors detectors = new Detectors();
+            detectors.setScale(Double.parseDouble(System.getProperty("detector.scale", "1")));
+            return detectors;
+        };
+        Tracker tracker = new Tracker(200, 30, 300, 100);
+        long start = System.nanoTime();
+        long frames;
+        // every worker gets its own detector, released at the end of the file
+        try (DetectorFactory factory = new DetectorFactory(creator, false, 0);
+             HistoryStore history = new HistoryStore(Paths.get(args[1]), 1 << 20, 0, 0)) {
+            BatchTracker batch = new BatchTracker(capture::read, factory, tracker, history, workers, chunk, warmup,
+                    (workers + 1) * chunk);
+            frames = batch.run();
+        } finally {
+            capture.release();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d frames in %.1f s (%.1f fps), %d tracks at the end%n", frames, seconds,
+                frames / seconds, tracker.getTracks().size());
+    }
+}
@@ -0,0 +1,78 @@
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Bounded queue between two stages of a {@link Pipeline}, the producer
+ * side applies a {@link Backpressure} policy when the queue is full.
+ * Dropped items are counted and handed to an optional callback, e.g. to
+ * release the native memory of a frame.
+ */
+public class BoundedQueue<T> {
+
+    private final ArrayBlockingQueue<T> queue;
+    private final Backpressure policy;
+    private final Consumer<? super T> onDrop;
+    private final AtomicLong dropped = new AtomicLong();
+
+    public BoundedQueue(int capacity, Backpressure policy, Consumer<? super T> onDrop) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.policy = policy;
+        this.onDrop = onDrop;
+    }
+
+    /**
+     * Queue an item according to the policy of the queue.
+     */
+    public void put(T item) throws InterruptedException {
+        switch (policy) {
+            case BLOCK:
+                queue.put(item);
+                break;
+            case DROP_NEWEST:
+                if (!queue.offer(item)) {
+                    drop(item);
+                }
+                break;
+            case DROP_OLDEST:
+                while (!queue.offer(item)) {
+                    T oldest = queue.poll();
+                    if (oldest != null) {
+                        drop(oldest);
+                    }
+                }
+                break;
+        }
+    }
+
+    /**
+     * Queue an item waiting for room whatever the policy, for items that
+     * must not be lost such as the end of stream.
+     */
+    public void putBlocking(T item) throws InterruptedException {
+        queue.put(item);
+    }
+
+    public T take() throws InterruptedException {
+        return queue.take();
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public Backpressure getPolicy() {
+        return policy;
+    }
+
+    private void drop(T item) {
+        dropped.incrementAndGet();
+        if (onDrop != null) {
+            onDrop.accept(item);
+        }
+    }
+}
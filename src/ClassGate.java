@@ -0,0 +1,45 @@
+/**
+ * Accepts a detection for a track only when their classes are compatible.
+ * The class of a track is the one of the last classified detection
+ * assigned to it. A track or a detection without class
+ * ({@link DetectionBatch#NO_CLASS}) is compatible with every class.
+ * <p>
+ * The gate does not depend on the position, combine it with a distance
+ * gate with {@link Gate#and(Gate)}.
+ */
+public class ClassGate implements Gate {
+
+    private final boolean[][] compatible;
+
+    /**
+     * Gate accepting the pairs of the same class only.
+     */
+    public ClassGate() {
+        this(new boolean[0][]);
+    }
+
+    /**
+     * @param compatible compatible[a][b] tells whether a detection of class b
+     *                   may be assigned to a track of class a; classes out of
+     *                   the mask are only compatible with themselves
+     */
+    public ClassGate(boolean[][] compatible) {
+        this.compatible = compatible;
+    }
+
+    @Override
+    public double getSearchRadius(TrackStore store, int track) {
+        return Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public boolean accept(TrackStore store, int track, DetectionBatch detections, int detection) {
+        int a = store.getClassId(track);
+        int b = detections.getClassId(detection);
+        if (a == DetectionBatch.NO_CLASS || b == DetectionBatch.NO_CLASS || a == b) {
+            return true;
+        }
+        return a >= 0 && a < compatible.length && compatible[a] != null
+                && b >= 0 && b < compatible[a].length && compatible[a][b];
+    }
+}
@@ -0,0 +1,287 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Solves a gated assignment problem by splitting it into the connected
+ * components of its bipartite graph (workers and jobs linked by the
+ * entries of the {@link SparseCostMatrix}) and solving each component on
+ * its own with a {@link SparseAssignment}.
+ * <p>
+ *
+ * Components are independent, so the ones with at least the inline size
+ * entries are solved in parallel on a {@link ForkJoinPool}, while all the
+ * smaller ones are gathered in a single problem solved on the calling
+ * thread, where forking would cost more than the solve. When no component
+ * is large the problem is solved in place without any copy. Each part
+ * keeps the relative order of its workers and jobs and is solved with the
+ * cost of leaving a worker unassigned (BIG) of the whole problem, so the
+ * result is exactly the one of
+ * {@link SparseAssignment} on the whole problem.
+ */
+public class ComponentAssignment {
+    private static final int DEFAULT_INLINE_SIZE = 4096;
+
+    private final ForkJoinPool pool;
+    private int inlineSize;
+
+    private int rows, cols;
+    private double big;
+    private SparseCostMatrix costs;
+    private int[] assignment;
+
+    // Union find over the nodes, workers first then jobs
+    private int[] parent = new int[0];
+    private int[] componentByNode = new int[0];
+    private int[] entriesByComponent = new int[0];
+
+    // Workers and jobs grouped by part, in their original order. Part 0
+    // gathers the small components, each other part is a large component.
+    private int parts;
+    private int[] workerStart = new int[0], workers = new int[0];
+    private int[] jobStart = new int[0], jobs = new int[0];
+    private int[] localIndexByJob = new int[0];
+
+    // One solver per thread shared by all the instances, so the buffers
+    // grow with the threads and not with the trackers. A thread never
+    // runs two solves at once: the tasks of a part never join, and the
+    // calling thread only joins once its own part is solved.
+    private static final ThreadLocal<Solver> SOLVERS = new ThreadLocal<Solver>() {
+        @Override
+        protected Solver initialValue() {
+            return new Solver();
+        }
+    };
+
+    public ComponentAssignment() {
+        this(ForkJoinPool.commonPool(), DEFAULT_INLINE_SIZE);
+    }
+
+    /**
+     * @param pool
+     *          the pool solving the large components
+     * @param inlineSize
+     *          number of entries below which a component is solved on the
+     *          calling thread
+     */
+    public ComponentAssignment(ForkJoinPool pool, int inlineSize) {
+        this.pool = pool;
+        this.inlineSize = inlineSize;
+    }
+
+    public int getInlineSize() {
+        return inlineSize;
+    }
+
+    public void setInlineSize(int inlineSize) {
+        this.inlineSize = inlineSize;
+    }
+
+    /**
+     * Execute the algorithm.
+     *
+     * @param costs
+     *          the gated costs, where an entry (i, j) holds the cost of
+     *          assigning worker i to job j.
+     * @param assignment
+     *          array of at least costs.getRows() entries receiving the job
+     *          of each worker, -1 when the worker is unassigned.
+     * @return the given assignment array.
+     */
+    public int[] execute(SparseCostMatrix costs, int[] assignment) {
+        return execute(costs, assignment, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Execute the algorithm with the given cost of leaving a worker
+     * unassigned, see {@link SparseAssignment#execute(SparseCostMatrix, int[], double)}.
+     *
+     * @param unassignedCost
+     *          cost of leaving a worker unassigned, capped at
+     *          {@link SparseAssignment#prohibitiveCost(SparseCostMatrix)};
+     *          positive infinity assigns as many workers as possible.
+     */
+    public int[] execute(SparseCostMatrix costs, int[] assignment, double unassignedCost) {
+        this.costs = costs;
+        this.assignment = assignment;
+        this.rows = costs.getRows();
+        this.cols = costs.getCols();
+        this.big = Math.min(unassignedCost, SparseAssignment.prohibitiveCost(costs));
+
+        // no component can be large when the whole problem is not
+        if (costs.size() < inlineSize) {
+            parts = 1;
+        } else {
+            partition();
+        }
+
+        if (parts == 1) {
+            // nothing worth forking
+            SOLVERS.get().solver.execute(costs, assignment, big);
+        } else {
+            List<ForkJoinTask<?>> forked = new ArrayList<>(parts - 1);
+            for (int p = 1; p < parts; p++) {
+                forked.add(pool.submit(new PartTask(p)));
+            }
+            SOLVERS.get().solve(this, 0);
+            for (ForkJoinTask<?> task : forked) {
+                task.join();
+            }
+        }
+
+        this.costs = null;
+        this.assignment = null;
+        return assignment;
+    }
+
+    /**
+     * Label each worker and job with its component, give every large
+     * component a part of its own, then group workers and jobs by part with
+     * a counting sort that keeps their order.
+     */
+    protected void partition() {
+        int nodes = rows + cols;
+        if (parent.length < nodes) {
+            int capacity = Math.max(nodes, 2 * parent.length);
+            parent = new int[capacity];
+            componentByNode = new int[capacity];
+            entriesByComponent = new int[capacity];
+            workerStart = new int[capacity + 1];
+            jobStart = new int[capacity + 1];
+        }
+        if (workers.length < rows) {
+            workers = new int[Math.max(rows, 2 * workers.length)];
+        }
+        if (jobs.length < cols) {
+            jobs = new int[Math.max(cols, 2 * jobs.length)];
+            localIndexByJob = new int[jobs.length];
+        }
+
+        for (int v = 0; v < nodes; v++) {
+            parent[v] = v;
+        }
+        for (int w = 0; w < rows; w++) {
+            for (int k = costs.start(w); k < costs.end(w); k++) {
+                union(w, rows + costs.col(k));
+            }
+        }
+
+        // Number the components in order of first appearance
+        int components = 0;
+        Arrays.fill(componentByNode, 0, nodes, -1);
+        for (int v = 0; v < nodes; v++) {
+            int root = find(v);
+            if (componentByNode[root] == -1) {
+                componentByNode[root] = components++;
+            }
+            componentByNode[v] = componentByNode[root];
+        }
+        Arrays.fill(entriesByComponent, 0, components, 0);
+        for (int w = 0; w < rows; w++) {
+            entriesByComponent[componentByNode[w]] += costs.end(w) - costs.start(w);
+        }
+
+        // Turn the component numbers into part numbers
+        parts = 1;
+        for (int c = 0; c < components; c++) {
+            entriesByComponent[c] = entriesByComponent[c] < inlineSize ? 0 : parts++;
+        }
+        for (int v = 0; v < nodes; v++) {
+            componentByNode[v] = entriesByComponent[componentByNode[v]];
+        }
+        if (parts == 1) {
+            return;
+        }
+
+        Arrays.fill(workerStart, 0, parts + 1, 0);
+        Arrays.fill(jobStart, 0, parts + 1, 0);
+        for (int w = 0; w < rows; w++) {
+            workerStart[componentByNode[w] + 1]++;
+        }
+        for (int j = 0; j < cols; j++) {
+            jobStart[componentByNode[rows + j] + 1]++;
+        }
+        for (int p = 0; p < parts; p++) {
+            workerStart[p + 1] += workerStart[p];
+            jobStart[p + 1] += jobStart[p];
+        }
+        // parent is no longer needed, use it as the fill pointer of each part
+        System.arraycopy(workerStart, 0, parent, 0, parts);
+        for (int w = 0; w < rows; w++) {
+            workers[parent[componentByNode[w]]++] = w;
+        }
+        System.arraycopy(jobStart, 0, parent, 0, parts);
+        for (int j = 0; j < cols; j++) {
+            int p = componentByNode[rows + j];
+            localIndexByJob[j] = parent[p] - jobStart[p];
+            jobs[parent[p]++] = j;
+        }
+    }
+
+    private int find(int v) {
+        while (parent[v] != v) {
+            parent[v] = parent[parent[v]];
+            v = parent[v];
+        }
+        return v;
+    }
+
+    private void union(int a, int b) {
+        a = find(a);
+        b = find(b);
+        if (a != b) {
+            // the smaller index becomes the root, keeping the numbering stable
+            if (a < b) {
+                parent[b] = a;
+            } else {
+                parent[a] = b;
+            }
+        }
+    }
+
+    /**
+     * Solves one part at a time with buffers owned by one thread.
+     */
+    private static class Solver {
+        private final SparseCostMatrix local = new SparseCostMatrix();
+        private final SparseAssignment solver = new SparseAssignment();
+        private int[] result = new int[16];
+
+        void solve(ComponentAssignment a, int p) {
+            int w0 = a.workerStart[p], w1 = a.workerStart[p + 1];
+            local.reset(w1 - w0, a.jobStart[p + 1] - a.jobStart[p]);
+            for (int k = w0; k < w1; k++) {
+                int w = a.workers[k];
+                for (int e = a.costs.start(w); e < a.costs.end(w); e++) {
+                    local.add(k - w0, a.localIndexByJob[a.costs.col(e)], a.costs.cost(e));
+                }
+            }
+            if (result.length < w1 - w0) {
+                result = new int[Math.max(w1 - w0, 2 * result.length)];
+            }
+            solver.execute(local, result, a.big);
+            for (int k = w0; k < w1; k++) {
+                int j = result[k - w0];
+                a.assignment[a.workers[k]] = j == -1 ? -1 : a.jobs[a.jobStart[p] + j];
+            }
+        }
+    }
+
+    private class PartTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int part;
+
+        PartTask(int part) {
+            this.part = part;
+        }
+
+        @Override
+        protected void compute() {
+            SOLVERS.get().solve(ComponentAssignment.this, part);
+        }
+    }
+}
@@ -0,0 +1,407 @@
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Finds the external contours of an edge image, their enclosing circles
+ * and their areas, on the calling thread or split in horizontal bands processed
+ * in parallel.
+ * <p>
+ * A band keeps the contours that do not touch its cut borders. The
+ * contours that do are only pieces: their bounding boxes, grown by one
+ * pixel, are merged into regions and the contours of each region are
+ * searched again. A region grows while one of its contours touches a
+ * side of the region inside the image, so at the end every contour of a
+ * region is whole. Any contour with a pixel in a region was then found
+ * whole in it, so the contours of the bands lying inside a region are
+ * dropped as duplicates. A loop around a cut contour crosses the same
+ * cut line, so it is cut too and its region holds the inner contours,
+ * which are not external in the whole image.
+ * <p>
+ * The circles are sorted by center (y, then x) then radius, so both modes
+ * give exactly the same result for the same image. This is not the order
+ * of {@link Imgproc#findContours}, which the detector followed before:
+ * the detections of a frame, and so the ids of the tracks born in the
+ * same frame, come in a different order than with that baseline, the
+ * blobs themselves being the same.
+ */
+public class ContourFinder {
+
+    private final ForkJoinPool pool;
+    private final Band[] bands;
+    private final Band whole = new Band();  // the whole image, and the regions
+
+    private final Circles circles = new Circles();
+    private final List<Rect> regions = new ArrayList<>();
+    private int[] order = new int[16];
+
+    /**
+     * Finder working on the calling thread.
+     */
+    public ContourFinder() {
+        this(null, 1);
+    }
+
+    /**
+     * @param pool pool processing the bands
+     * @param bands number of bands the image is split in, usually a few per thread
+     */
+    public ContourFinder(ForkJoinPool pool, int bands) {
+        if (bands < 1) {
+            throw new IllegalArgumentException("Number of bands must be positive: " + bands);
+        }
+        this.pool = pool;
+        this.bands = new Band[pool == null ? 0 : bands];
+        for (int b = 0; b < this.bands.length; b++) {
+            this.bands[b] = new Band();
+        }
+    }
+
+    /**
+     * Find the enclosing circles of the external contours of the image.
+     *
+     * @param edges binary image
+     * @return number of circles, read them with {@link #getX(int)},
+     * {@link #getY(int)} and {@link #getRadius(int)}
+     */
+    public int find(Mat edges) {
+        circles.clear();
+        int rows = edges.rows();
+        int count = Math.min(bands.length, rows);
+        if (count <= 1) {
+            whole.find(edges, 0, rows, false);
+            circles.addAll(whole.circles, null);
+        } else {
+            // the first band is processed by the calling thread
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(count - 1);
+            for (int b = 1; b < count; b++) {
+                Band band = bands[b];
+                int r0 = (int) ((long) rows * b / count);
+                int r1 = (int) ((long) rows * (b + 1) / count);
+                tasks.add(pool.submit(() -> band.find(edges, r0, r1, true)));
+            }
+            bands[0].find(edges, 0, rows / count, true);
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+            mergeCut(edges, count);
+        }
+        sort();
+        return circles.size;
+    }
+
+    public double getX(int k) {
+        return circles.x[order[k]];
+    }
+
+    public double getY(int k) {
+        return circles.y[order[k]];
+    }
+
+    public float getRadius(int k) {
+        return circles.r[order[k]];
+    }
+
+    /**
+     * @return area enclosed by the k-th contour
+     */
+    public double getArea(int k) {
+        return circles.area[order[k]];
+    }
+
+    /**
+     * @return bytes of native memory held by the buffers between two searches
+     */
+    public long getNativeBytes() {
+        long bytes = whole.getNativeBytes();
+        for (Band band : bands) {
+            bytes += band.getNativeBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Release the native memory of the buffers.
+     */
+    public void release() {
+        whole.release();
+        for (Band band : bands) {
+            band.release();
+        }
+    }
+
+    /**
+     * Search again the contours cut by the bands, in regions grown until
+     * none of their contours is cut.
+     */
+    private void mergeCut(Mat edges, int count) {
+        regions.clear();
+        for (int b = 0; b < count; b++) {
+            for (Rect cut : bands[b].cut) {
+                regions.add(grow(cut, edges));
+            }
+        }
+        merge();
+
+        boolean grown = true;
+        while (grown) {
+            grown = false;
+            for (int g = 0; g < regions.size(); g++) {
+                Rect region = regions.get(g);
+                Mat sub = edges.submat(region);
+                whole.findRegion(sub, region, edges.cols(), edges.rows());
+                sub.release();
+                if (whole.cut.size() > 0) {
+                    for (Rect cut : whole.cut) {
+                        region = union(region, grow(cut, edges));
+                    }
+                    regions.set(g, region);
+                    grown = true;
+                }
+            }
+            if (grown) {
+                merge();
+            }
+        }
+
+        // Whole contours of the bands, except the ones found again in a region
+        for (int b = 0; b < count; b++) {
+            circles.addAll(bands[b].circles, regions);
+        }
+        for (Rect region : regions) {
+            Mat sub = edges.submat(region);
+            whole.findRegion(sub, region, edges.cols(), edges.rows());
+            sub.release();
+            circles.addAll(whole.circles, null);
+        }
+    }
+
+    /**
+     * Merge the overlapping regions until they are disjoint.
+     */
+    private void merge() {
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int a = 0; a < regions.size(); a++) {
+                for (int b = regions.size() - 1; b > a; b--) {
+                    if (overlap(regions.get(a), regions.get(b))) {
+                        regions.set(a, union(regions.get(a), regions.get(b)));
+                        regions.remove(b);
+                        merged = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private static Rect grow(Rect rect, Mat image) {
+        int x0 = Math.max(0, rect.x - 1);
+        int y0 = Math.max(0, rect.y - 1);
+        int x1 = Math.min(image.cols(), rect.x + rect.width + 1);
+        int y1 = Math.min(image.rows(), rect.y + rect.height + 1);
+        return new Rect(x0, y0, x1 - x0, y1 - y0);
+    }
+
+    private static Rect union(Rect a, Rect b) {
+        int x0 = Math.min(a.x, b.x);
+        int y0 = Math.min(a.y, b.y);
+        int x1 = Math.max(a.x + a.width, b.x + b.width);
+        int y1 = Math.max(a.y + a.height, b.y + b.height);
+        return new Rect(x0, y0, x1 - x0, y1 - y0);
+    }
+
+    private static boolean overlap(Rect a, Rect b) {
+        return a.x < b.x + b.width && b.x < a.x + a.width && a.y < b.y + b.height && b.y < a.y + a.height;
+    }
+
+    private static boolean contains(Rect outer, int x, int y, int width, int height) {
+        return x >= outer.x && y >= outer.y && x + width <= outer.x + outer.width
+                && y + height <= outer.y + outer.height;
+    }
+
+    /**
+     * Sort the circles by y, x then radius, insertion sort as there are
+     * few blobs per frame.
+     */
+    private void sort() {
+        int n = circles.size;
+        if (order.length < n) {
+            order = new int[Math.max(n, 2 * order.length)];
+        }
+        for (int k = 0; k < n; k++) {
+            int i = k;
+            int j = k - 1;
+            while (j >= 0 && circles.before(i, order[j])) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = i;
+        }
+    }
+
+    /**
+     * Enclosing circles with the bounding box of their contour.
+     */
+    private static final class Circles {
+        double[] x = new double[16], y = new double[16];
+        float[] r = new float[16];
+        double[] area = new double[16];
+        int[] bx = new int[16], by = new int[16], bw = new int[16], bh = new int[16];
+        int size;
+
+        void clear() {
+            size = 0;
+        }
+
+        void add(double cx, double cy, float radius, double contourArea, Rect box) {
+            add(cx, cy, radius, contourArea, box.x, box.y, box.width, box.height);
+        }
+
+        void add(double cx, double cy, float radius, double contourArea, int boxX, int boxY, int boxWidth,
+                 int boxHeight) {
+            if (size == x.length) {
+                int capacity = 2 * size;
+                x = Arrays.copyOf(x, capacity);
+                y = Arrays.copyOf(y, capacity);
+                r = Arrays.copyOf(r, capacity);
+                area = Arrays.copyOf(area, capacity);
+                bx = Arrays.copyOf(bx, capacity);
+                by = Arrays.copyOf(by, capacity);
+                bw = Arrays.copyOf(bw, capacity);
+                bh = Arrays.copyOf(bh, capacity);
+            }
+            x[size] = cx;
+            y[size] = cy;
+            r[size] = radius;
+            area[size] = contourArea;
+            bx[size] = boxX;
+            by[size] = boxY;
+            bw[size] = boxWidth;
+            bh[size] = boxHeight;
+            size++;
+        }
+
+        /**
+         * Append the circles of other, except the ones inside one of the regions.
+         */
+        void addAll(Circles other, List<Rect> regions) {
+            for (int k = 0; k < other.size; k++) {
+                boolean inside = false;
+                if (regions != null) {
+                    for (int g = 0; g < regions.size() && !inside; g++) {
+                        inside = contains(regions.get(g), other.bx[k], other.by[k], other.bw[k], other.bh[k]);
+                    }
+                }
+                if (!inside) {
+                    add(other.x[k], other.y[k], other.r[k], other.area[k], other.bx[k], other.by[k], other.bw[k], other.bh[k]);
+                }
+            }
+        }
+
+        boolean before(int a, int b) {
+            if (y[a] != y[b]) {
+                return y[a] < y[b];
+            }
+            if (x[a] != x[b]) {
+                return x[a] < x[b];
+            }
+            return r[a] < r[b];
+        }
+    }
+
+    /**
+     * Buffers of one band, used by one thread at a time.
+     */
+    private static final class Band {
+        final List<MatOfPoint> contours = new ArrayList<>();
+        final Mat hierarchy = new Mat();
+        final MatOfPoint2f cnt2f = new MatOfPoint2f();
+        final float[] radius = new float[1];
+        final Point center = new Point();
+        final Circles circles = new Circles();
+        final List<Rect> cut = new ArrayList<>();
+
+        /**
+         * Contours of the rows [r0, r1) of the image; with cuts, the ones
+         * touching a border between two bands are only kept in cut.
+         */
+        void find(Mat edges, int r0, int r1, boolean cuts) {
+            Mat sub = edges.submat(r0, r1, 0, edges.cols());
+            contours(sub, r0, 0);
+            sub.release();
+            for (MatOfPoint cnt : contours) {
+                Rect box = Imgproc.boundingRect(cnt);
+                boolean touches = cuts && ((box.y == r0 && r0 > 0)
+                        || (box.y + box.height == r1 && r1 < edges.rows()));
+                if (touches) {
+                    cut.add(box);
+                } else {
+                    circle(cnt, box);
+                }
+            }
+            releaseContours();
+        }
+
+        /**
+         * Contours of a region of an image of the given size; the ones
+         * touching a side of the region inside the image are kept in cut.
+         */
+        void findRegion(Mat sub, Rect region, int cols, int rows) {
+            contours(sub, region.y, region.x);
+            for (MatOfPoint cnt : contours) {
+                Rect box = Imgproc.boundingRect(cnt);
+                boolean touches = (box.x == region.x && region.x > 0)
+                        || (box.y == region.y && region.y > 0)
+                        || (box.x + box.width == region.x + region.width && region.x + region.width < cols)
+                        || (box.y + box.height == region.y + region.height && region.y + region.height < rows);
+                if (touches) {
+                    cut.add(box);
+                } else {
+                    circle(cnt, box);
+                }
+            }
+            releaseContours();
+        }
+
+        private void contours(Mat sub, int dy, int dx) {
+            circles.clear();
+            cut.clear();
+            Imgproc.findContours(sub, contours, hierarchy, Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_SIMPLE,
+                    new Point(dx, dy));
+        }
+
+        private void circle(MatOfPoint cnt, Rect box) {
+            cnt.convertTo(cnt2f, CvType.CV_32F);
+            Imgproc.minEnclosingCircle(cnt2f, center, radius);
+            circles.add(center.x, center.y, radius[0], Imgproc.contourArea(cnt), box);
+        }
+
+        private void releaseContours() {
+            for (MatOfPoint cnt : contours) {
+                cnt.release();
+            }
+            contours.clear();
+        }
+
+        long getNativeBytes() {
+            return hierarchy.total() * hierarchy.elemSize() + cnt2f.total() * cnt2f.elemSize();
+        }
+
+        void release() {
+            releaseContours();
+            hierarchy.release();
+            cnt2f.release();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+/**
+ * Cost of assigning a detection to a track, used to fill the cost matrix
+ * of the assignment. Only the pairs accepted by the {@link Gate} of the
+ * tracker are priced. A cost function can still reject a pair by
+ * returning {@link #REJECT}, the pair is then left out of the cost matrix
+ * and never reaches the assignment solver.
+ * <p>
+ * The costs of the accepted pairs must be finite and should not be
+ * negative. Implementations are called on the thread running the update
+ * and may keep scratch state.
+ */
+public interface CostFunction {
+
+    double REJECT = Double.POSITIVE_INFINITY;
+
+    /**
+     * @param store Kalman state of the tracks, after the prediction of the
+     *              previous update
+     * @param track slot of the track in the store
+     * @param detections detections of the frame
+     * @param detection index of the detection in the batch
+     * @return cost of the pair, or {@link #REJECT}
+     */
+    double cost(TrackStore store, int track, DetectionBatch detections, int detection);
+}
@@ -0,0 +1,107 @@
+import java.util.Arrays;
+
+/**
+ * Detections of one frame in primitive arrays: the center of each
+ * detection and, when the detector knows them, the radius of its
+ * enclosing circle, its area, a confidence and a class. A batch is meant
+ * to be cleared and filled again every frame, its arrays only grow.
+ * <p>
+ * This is the input of {@link Tracker#Update(DetectionBatch)}; it does
+ * not depend on OpenCV so the tracker can be used without it.
+ */
+public class DetectionBatch {
+
+    public static final int NO_CLASS = -1;
+
+    private double[] x = new double[16], y = new double[16];
+    private float[] radius = new float[16];
+    private double[] area = new double[16];
+    private float[] confidence = new float[16];
+    private int[] classId = new int[16];
+    private int size;
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Add a detection known by its center only.
+     */
+    public void add(double x, double y) {
+        add(x, y, 0, 0, 1, NO_CLASS);
+    }
+
+    public void add(double x, double y, float radius, double area) {
+        add(x, y, radius, area, 1, NO_CLASS);
+    }
+
+    /**
+     * @param radius radius of the enclosing circle, 0 when unknown
+     * @param area area of the blob, 0 when unknown
+     * @param confidence confidence of the detector, 1 when unknown
+     * @param classId class of the object, {@link #NO_CLASS} when unknown
+     */
+    public void add(double x, double y, float radius, double area, float confidence, int classId) {
+        if (size == this.x.length) {
+            int capacity = 2 * size;
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+            this.radius = Arrays.copyOf(this.radius, capacity);
+            this.area = Arrays.copyOf(this.area, capacity);
+            this.confidence = Arrays.copyOf(this.confidence, capacity);
+            this.classId = Arrays.copyOf(this.classId, capacity);
+        }
+        this.x[size] = x;
+        this.y[size] = y;
+        this.radius[size] = radius;
+        this.area[size] = area;
+        this.confidence[size] = confidence;
+        this.classId[size] = classId;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getX(int i) {
+        return x[i];
+    }
+
+    public double getY(int i) {
+        return y[i];
+    }
+
+    public float getRadius(int i) {
+        return radius[i];
+    }
+
+    public double getArea(int i) {
+        return area[i];
+    }
+
+    public float getConfidence(int i) {
+        return confidence[i];
+    }
+
+    public int getClassId(int i) {
+        return classId[i];
+    }
+
+    /**
+     * @return a copy holding only the detections, e.g. to queue it while
+     * this batch is filled again
+     */
+    public DetectionBatch copy() {
+        DetectionBatch copy = new DetectionBatch();
+        int capacity = Math.max(1, size);
+        copy.x = Arrays.copyOf(x, capacity);
+        copy.y = Arrays.copyOf(y, capacity);
+        copy.radius = Arrays.copyOf(radius, capacity);
+        copy.area = Arrays.copyOf(area, capacity);
+        copy.confidence = Arrays.copyOf(confidence, capacity);
+        copy.classId = Arrays.copyOf(classId, capacity);
+        copy.size = size;
+        return copy;
+    }
+}
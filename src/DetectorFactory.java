@@ -0,0 +1,116 @@
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Hands out one {@link Detectors} per stream. A detector learns the
+ * background of its stream, so it is leased to a single stream at a time
+ * and must only be used by the thread processing that stream, or by
+ * successive tasks of a scheduler that never runs the stream on two
+ * threads at once, such as the {@link TrackingService}.
+ * <p>
+ * In pooled mode a released detector is kept idle under the id of its
+ * stream, so a restarted stream gets back a detector whose background is
+ * already learnt. At most maxIdle detectors are kept, the least recently
+ * released ones are closed first. Without pooling a released detector is
+ * closed at once.
+ */
+public class DetectorFactory implements AutoCloseable {
+
+    private final Supplier<Detectors> creator;
+    private final boolean pooled;
+    private final int maxIdle;
+
+    private final Map<String, Detectors> leased = new HashMap<>();
+    private final LinkedHashMap<String, Detectors> idle = new LinkedHashMap<>();
+    private boolean closed;
+
+    /**
+     * Factory without pooling.
+     */
+    public DetectorFactory() {
+        this(Detectors::new, false, 0);
+    }
+
+    /**
+     * @param creator creates a new detector
+     * @param pooled keep the released detectors for the restart of their stream
+     * @param maxIdle number of idle detectors kept at most
+     */
+    public DetectorFactory(Supplier<Detectors> creator, boolean pooled, int maxIdle) {
+        this.creator = creator;
+        this.pooled = pooled;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Lease the detector of a stream, the warm one of a previous lease when
+     * pooled, a new one otherwise.
+     *
+     * @throws IllegalStateException if the stream already has a detector
+     */
+    public synchronized Detectors acquire(String streamId) {
+        if (closed) {
+            throw new IllegalStateException("Detector factory closed");
+        }
+        if (leased.containsKey(streamId)) {
+            throw new IllegalStateException("Stream already has a detector: " + streamId);
+        }
+        Detectors detectors = idle.remove(streamId);
+        if (detectors == null) {
+            detectors = creator.get();
+        }
+        leased.put(streamId, detectors);
+        return detectors;
+    }
+
+    /**
+     * Give back the detector of a stream, which must not be used afterwards.
+     *
+     * @throws IllegalArgumentException if it is not the detector leased to the stream
+     */
+    public synchronized void release(String streamId, Detectors detectors) {
+        if (leased.get(streamId) != detectors) {
+            throw new IllegalArgumentException("Detector not leased to stream " + streamId);
+        }
+        leased.remove(streamId);
+        if (!pooled || closed || maxIdle <= 0) {
+            detectors.close();
+            return;
+        }
+        idle.put(streamId, detectors);
+        Iterator<Detectors> eldest = idle.values().iterator();
+        while (idle.size() > maxIdle) {
+            eldest.next().close();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * @return number of detectors currently leased
+     */
+    public synchronized int getLeased() {
+        return leased.size();
+    }
+
+    /**
+     * @return number of warm detectors waiting for their stream
+     */
+    public synchronized int getIdle() {
+        return idle.size();
+    }
+
+    /**
+     * Close the idle detectors; the leased ones are closed when released.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Detectors detectors : idle.values()) {
+            detectors.close();
+        }
+        idle.clear();
+    }
+}
@@ -5,97 +5,423 @@ import org.opencv.video.BackgroundSubtractorMOG2;
 import org.opencv.video.Video;
 
 import java.awt.*;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
-public class Detectors {
+/**
+ * Detects the moving blobs of a stream: background subtraction, blur,
+ * threshold, edges and contours, then keeps the contours whose enclosing
+ * circle radius and area are in the configured ranges, 9 to 20 pixels of
+ * radius by default. The blobs are returned in a {@link DetectionBatch}.
+ * <p>
+ * The processing can be limited to regions of interest, rectangles or
+ * polygons: each region is processed on a submat of the frame with its
+ * own background model, and the foreground outside a polygon is masked.
+ * Without region the whole frame is one region. The background model can
+ * also run on a frame downscaled by a factor, the centers and radii being
+ * mapped back to the full resolution.
+ * <p>
+ * The working Mats are allocated at the first frame and reused for the
+ * next ones of the same size, so a running detector does not allocate
+ * native memory. The background model is learnt from the frames, so a
+ * detector belongs to one stream. {@link #close()} releases the native
+ * memory without waiting for the finalizers, except the background models:
+ * the Java binding of OpenCV has no way to delete them. Instead of being
+ * dropped, a model is learnt again from scratch when the background is
+ * reset, and the model of a removed region is kept for the next region,
+ * so the models are only left to the finalizers when the detector closes.
+ * <p>
+ * A detector is not thread safe, use a {@link DetectorFactory} to give
+ * each stream its own.
+ */
+public class Detectors implements AutoCloseable {
 
     // Color
     private final Scalar yellow = new Scalar(0, 255, 255);
     private final Scalar green = new Scalar(0, 255, 0);
 
+    private static final Size blurSize = new Size(7, 7);
+
+    // Blob filter: radius in [minRadius, maxRadius), area in [minArea, maxArea]
+    private double minRadius = 9;
+    private double maxRadius = 20;
+    private double minArea = 0;
+    private double maxArea = Double.POSITIVE_INFINITY;
+
     private Mat frame;
 
-    private static Detectors instance = null;
+    private final List<Region> regions = new ArrayList<>();
+    private boolean fullFrame = true;  // no region configured, one region covers the frame
+    private double scale = 1;
+
+    // Buffers shared by the regions, reused from one frame to the next
+    private ContourFinder contourFinder = new ContourFinder();
+    private final DetectionBatch batch = new DetectionBatch();
+    private final Point center = new Point();
+    private final List<MatOfPoint> outlines = new ArrayList<>();
+    private final ArrayDeque<BackgroundSubtractorMOG2> spareModels = new ArrayDeque<>(); // of removed regions
+
+    private final Point[] limit = rectLimit(VideoController.videoSize);
+    private boolean closed;
+
+    public Detectors() {
+    }
+
+    /**
+     * @return the limit drawn on the frames of the given video size, as a rectangle
+     */
+    public static Rect getLimit(String videoSize) {
+        Point[] limit = rectLimit(videoSize);
+        return new Rect(limit[0], limit[1]);
+    }
+
+    /**
+     * Add a rectangular region of interest, it must lie inside the frames.
+     * The regions have to be set before the first frame, changing them
+     * restarts the learning of the background.
+     */
+    public void addRegion(Rect rect) {
+        addRegion(new Region(rect, null));
+    }
 
-    private BackgroundSubtractorMOG2 fgbg = Video.createBackgroundSubtractorMOG2();
+    /**
+     * Add a polygonal region of interest, it must lie inside the frames.
+     */
+    public void addRegion(MatOfPoint polygon) {
+        addRegion(new Region(Imgproc.boundingRect(polygon), polygon.toArray()));
+    }
 
-    private Detectors() {
+    /**
+     * Remove every region, the whole frame is processed again.
+     */
+    public void clearRegions() {
+        releaseRegions();
+        fullFrame = true;
     }
 
-    public static Detectors getInstance() {
-        if (instance == null) {
-            instance = new Detectors();
+    /**
+     * @param scale factor applied to the frame before the background
+     *              subtraction, in (0, 1]; changing it restarts the learning
+     *              of the background
+     */
+    public void setScale(double scale) {
+        if (!(scale > 0 && scale <= 1)) {
+            throw new IllegalArgumentException("Scale must be in (0, 1]: " + scale);
+        }
+        this.scale = scale;
+        for (Region region : regions) {
+            region.reset();
         }
-        return instance;
+    }
+
+    public double getScale() {
+        return scale;
+    }
+
+    /**
+     * Search the contours of high resolution frames in parallel, the blobs
+     * found are the same.
+     *
+     * @param pool pool processing the bands of the frames, null to search on
+     *             the calling thread
+     * @param bands number of horizontal bands the frames are split in
+     */
+    public void setParallelContours(ForkJoinPool pool, int bands) {
+        contourFinder.release();
+        contourFinder = pool == null ? new ContourFinder() : new ContourFinder(pool, bands);
+    }
+
+    /**
+     * Keep the blobs whose enclosing circle has a radius in [min, max), in
+     * pixels of the frame.
+     */
+    public void setRadiusRange(double min, double max) {
+        this.minRadius = min;
+        this.maxRadius = max;
+    }
+
+    /**
+     * Keep the blobs whose contour encloses an area in [min, max], in
+     * pixels of the frame.
+     */
+    public void setAreaRange(double min, double max) {
+        this.minArea = min;
+        this.maxArea = max;
     }
 
     public Mat getFrame() {
         return frame;
     }
 
+    /**
+     * @param thresholdValue not used
+     * @return the centers of the blobs of the frame
+     */
     public ArrayList<Point> detect(Mat frame, double thresholdValue) {
+        detect(frame, batch);
+        ArrayList<Point> centers = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            centers.add(new Point(batch.getX(i), batch.getY(i)));
+        }
+        return centers;
+    }
 
-        thresholdValue = 50;
+    /**
+     * Detect the blobs of a frame, and draw them on it.
+     *
+     * @param detections cleared then filled with the blobs of the frame
+     */
+    public void detect(Mat frame, DetectionBatch detections) {
+        if (closed) {
+            throw new IllegalStateException("Detectors closed");
+        }
 
         this.frame = frame;
+        detections.clear();
+
+        if (fullFrame && (regions.isEmpty() || regions.get(0).bounds.width != frame.cols()
+                || regions.get(0).bounds.height != frame.rows())) {
+            releaseRegions();
+            regions.add(new Region(new Rect(0, 0, frame.cols(), frame.rows()), null));
+        }
+
+        for (Region region : regions) {
+            region.detect(detections);
+        }
+
+        // Draw once every region has read the frame, the regions may overlap
+        if (fullFrame) {
+            Imgproc.rectangle(this.frame, limit[0], limit[1], yellow,4);
+        } else {
+            outlines.clear();
+            for (Region region : regions) {
+                outlines.add(region.outline);
+            }
+            Imgproc.polylines(this.frame, outlines, true, yellow, 4);
+        }
+        for (int i = 0; i < detections.size(); i++) {
+            center.x = detections.getX(i);
+            center.y = detections.getY(i);
+            Imgproc.circle(this.frame, center, (int) detections.getRadius(i), green, 2);
+        }
+    }
+
+    /**
+     * @return bytes of native memory held by the working buffers
+     */
+    public long getNativeBytes() {
+        long bytes = contourFinder.getNativeBytes();
+        for (Region region : regions) {
+            bytes += region.getNativeBytes();
+        }
+        return bytes;
+    }
 
-        // List of the centers
-        ArrayList<Point> centers = new ArrayList<>();
+    /**
+     * Release the native memory of the working buffers and forget the
+     * background model. The detector can not be used afterwards.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        releaseRegions();
+        spareModels.clear();
+        contourFinder.release();
+        frame = null;
+    }
 
-        // Convert BGR to GRAY
-        Mat grayFrame = new Mat();
-        Imgproc.cvtColor(this.frame, grayFrame, Imgproc.COLOR_BGR2GRAY);
+    private void addRegion(Region region) {
+        if (fullFrame) {
+            releaseRegions();
+            fullFrame = false;
+        }
+        regions.add(region);
+    }
 
-        // Perform background substraction
-        Mat fgmask = new Mat();
-        fgbg.apply(grayFrame, fgmask);
+    private void releaseRegions() {
+        for (Region region : regions) {
+            region.release();
+        }
+        regions.clear();
+    }
+
+    private static long bytes(Mat mat) {
+        return mat.total() * mat.elemSize();
+    }
 
-        // Blur the image to delete the noise
-        Mat fgmaskBlur = new Mat();
-        Imgproc.GaussianBlur(fgmask, fgmaskBlur, new Size(7,7),0);
+    /**
+     * A region of interest with its background model and its buffers.
+     */
+    private class Region {
+        final Rect bounds;
+        final Point[] polygon;  // in frame coordinates, null for a rectangle
+        final MatOfPoint outline;
 
-        // Retain only edges within the threshold
-        Mat thresh = new Mat();
-        Imgproc.threshold(fgmaskBlur, thresh, 210, 255, Imgproc.THRESH_BINARY);
+        BackgroundSubtractorMOG2 fgbg;
+        boolean relearn;  // the next frame starts the background model again
+        Mat roi;  // the region in the last frame, reused while the frame keeps its data
+        long roiFrame, roiData;
+        final Size smallSize = new Size();
+        double smallScale;  // scale smallSize was computed for
+        final Mat grayFrame = new Mat();
+        final Mat smallFrame = new Mat();
+        final Mat fgmask = new Mat();
+        final Mat fgmaskBlur = new Mat();
+        final Mat thresh = new Mat();
+        final Mat edges = new Mat();
+        Mat mask;  // polygon at the processing scale, null for a rectangle
 
-        // Detect edges
-        Mat edges = new Mat();
-        Imgproc.Canny(thresh, edges, 220, 255);
+        Region(Rect bounds, Point[] polygon) {
+            this.bounds = bounds;
+            this.polygon = polygon;
+            this.outline = polygon != null ? new MatOfPoint(polygon) : new MatOfPoint(new Point(bounds.x, bounds.y),
+                    new Point(bounds.x + bounds.width - 1, bounds.y),
+                    new Point(bounds.x + bounds.width - 1, bounds.y + bounds.height - 1),
+                    new Point(bounds.x, bounds.y + bounds.height - 1));
+        }
 
-        // Find contours
-        List<MatOfPoint> contours = new ArrayList<>();
-        Mat hierachy = new Mat();
-        Imgproc.findContours(edges, contours, hierachy, Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_SIMPLE);
+        void detect(DetectionBatch detections) {
+            if (bounds.x < 0 || bounds.y < 0 || bounds.x + bounds.width > frame.cols()
+                    || bounds.y + bounds.height > frame.rows()) {
+                throw new IllegalArgumentException("Region outside of the frame: " + bounds.x + "," + bounds.y
+                        + " " + bounds.width + "x" + bounds.height);
+            }
+            if (fgbg == null) {
+                fgbg = spareModels.poll();
+                if (fgbg == null) {
+                    fgbg = Video.createBackgroundSubtractorMOG2();
+                }
+                relearn = true;
+            }
 
-        int blobRadiusThresh = 8;
+            // Convert BGR to GRAY, only the region
+            if (roi == null || roiFrame != frame.nativeObj || roiData != frame.dataAddr()) {
+                if (roi != null) {
+                    roi.release();
+                }
+                roi = frame.submat(bounds);
+                roiFrame = frame.nativeObj;
+                roiData = frame.dataAddr();
+            }
+            Imgproc.cvtColor(roi, grayFrame, Imgproc.COLOR_BGR2GRAY);
 
-        Imgproc.rectangle(this.frame, rectLimit(VideoController.videoSize)[0], rectLimit(VideoController.videoSize)[1], yellow,4);
+            // Downscale for the background model
+            Mat input = grayFrame;
+            if (scale < 1) {
+                if (smallScale != scale) {
+                    smallSize.width = Math.max(1, Math.round(bounds.width * scale));
+                    smallSize.height = Math.max(1, Math.round(bounds.height * scale));
+                    smallScale = scale;
+                }
+                Imgproc.resize(grayFrame, smallFrame, smallSize, 0, 0, Imgproc.INTER_AREA);
+                input = smallFrame;
+            }
 
+            // Perform background substraction, a learning rate of 1
+            // initializes the model from this frame, as a new one would
+            fgbg.apply(input, fgmask, relearn ? 1 : -1);
+            relearn = false;
+            if (polygon != null) {
+                Core.bitwise_and(fgmask, mask(), fgmask);
+            }
 
-        for (MatOfPoint cnt : contours) {
-            MatOfPoint2f cnt2f = new MatOfPoint2f();
-            cnt.convertTo(cnt2f, CvType.CV_32F);
-            Point center = new Point();
-            float[] radius = new float[contours.size()];
-            Imgproc.minEnclosingCircle(cnt2f, center, radius);
+            // Blur the image to delete the noise
+            Imgproc.GaussianBlur(fgmask, fgmaskBlur, blurSize, 0);
 
-            for(float r : radius) {
-                if ((int)r > blobRadiusThresh && (int)r < 20) {
-                    Imgproc.circle(this.frame, center, (int)r, green, 2);
-                    centers.add(center);
+            // Retain only edges within the threshold
+            Imgproc.threshold(fgmaskBlur, thresh, 210, 255, Imgproc.THRESH_BINARY);
+
+            // Detect edges
+            Imgproc.Canny(thresh, edges, 220, 255);
+
+            // Find contours, their enclosing circles and areas, sorted by
+            // center, which orders the detections of the frame
+            int found = contourFinder.find(edges);
+
+            // Keep the blobs of the expected size, in one pass
+            double sx = (double) bounds.width / input.cols();
+            double sy = (double) bounds.height / input.rows();
+            for (int k = 0; k < found; k++) {
+                // back to the frame coordinates
+                float r = (float) (contourFinder.getRadius(k) * sx);
+                double area = contourFinder.getArea(k) * sx * sy;
+                if (r >= minRadius && r < maxRadius && area >= minArea && area <= maxArea) {
+                    double x = bounds.x + (contourFinder.getX(k) + 0.5) * sx - 0.5;
+                    double y = bounds.y + (contourFinder.getY(k) + 0.5) * sy - 0.5;
+                    detections.add(x, y, r, area);
                 }
             }
         }
 
-        return centers;
+        /**
+         * @return the polygon drawn at the size of the foreground mask
+         */
+        Mat mask() {
+            if (mask == null || mask.rows() != fgmask.rows() || mask.cols() != fgmask.cols()) {
+                if (mask != null) {
+                    mask.release();
+                }
+                double sx = (double) fgmask.cols() / bounds.width;
+                double sy = (double) fgmask.rows() / bounds.height;
+                Point[] scaled = new Point[polygon.length];
+                for (int k = 0; k < polygon.length; k++) {
+                    scaled[k] = new Point((polygon[k].x - bounds.x) * sx, (polygon[k].y - bounds.y) * sy);
+                }
+                mask = new Mat(fgmask.rows(), fgmask.cols(), CvType.CV_8UC1, new Scalar(0));
+                MatOfPoint shape = new MatOfPoint(scaled);
+                List<MatOfPoint> shapes = new ArrayList<>();
+                shapes.add(shape);
+                Imgproc.fillPoly(mask, shapes, new Scalar(255));
+                shape.release();
+            }
+            return mask;
+        }
+
+        long getNativeBytes() {
+            long bytes = bytes(grayFrame) + bytes(smallFrame) + bytes(fgmask) + bytes(fgmaskBlur) + bytes(thresh)
+                    + bytes(edges);
+            return mask == null ? bytes : bytes + bytes(mask);
+        }
+
+        /**
+         * Forget the background, it is learnt again from the next frame.
+         */
+        void reset() {
+            relearn = true;
+        }
+
+        void release() {
+            if (fgbg != null) {
+                spareModels.add(fgbg);
+                fgbg = null;
+            }
+            if (roi != null) {
+                roi.release();
+                roi = null;
+            }
+            grayFrame.release();
+            smallFrame.release();
+            fgmask.release();
+            fgmaskBlur.release();
+            thresh.release();
+            edges.release();
+            outline.release();
+            if (mask != null) {
+                mask.release();
+            }
+        }
     }
 
 
-    private Point[] rectLimit(String videoSize) {
+    private static Point[] rectLimit(String videoSize) {
         Point pSupLeft = null;
         Point pInfRight = null;
 
@@ -0,0 +1,36 @@
+/**
+ * Accepts the detections within a fixed distance of the track, the
+ * default gate of the {@link Tracker}. The threshold is the one of the
+ * {@link EuclideanCost}, half the distance, so the search radius is twice
+ * the threshold. The gate compares the squared distance, leaving the
+ * square root to the cost of the accepted pairs.
+ */
+public class DistanceGate implements Gate {
+
+    private final double threshold;
+    private final double limit2;    // largest accepted squared distance
+
+    /**
+     * @param threshold largest accepted half distance
+     */
+    public DistanceGate(double threshold) {
+        this.threshold = threshold;
+        this.limit2 = 4 * threshold * threshold;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    @Override
+    public double getSearchRadius(TrackStore store, int track) {
+        return 2 * threshold;
+    }
+
+    @Override
+    public boolean accept(TrackStore store, int track, DetectionBatch detections, int detection) {
+        double dx = store.getX(track) - detections.getX(detection);
+        double dy = store.getY(track) - detections.getY(detection);
+        return dx * dx + dy * dy <= limit2;
+    }
+}
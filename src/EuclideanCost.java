@@ -0,0 +1,13 @@
+/**
+ * Half the distance between the position of the track and the detection,
+ * the default cost of the {@link Tracker}.
+ */
+public class EuclideanCost implements CostFunction {
+
+    @Override
+    public double cost(TrackStore store, int track, DetectionBatch detections, int detection) {
+        double dx = store.getX(track) - detections.getX(detection);
+        double dy = store.getY(track) - detections.getY(detection);
+        return 0.5 * Math.sqrt(dx * dx + dy * dy);
+    }
+}
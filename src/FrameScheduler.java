@@ -0,0 +1,138 @@
+/**
+ * Paces the processing of a stream at the frame rate of its source, and
+ * sheds load when the processing of a frame takes longer than the period.
+ * <p>
+ * Every frame has a deadline, one period after the previous one. A tick
+ * first gives up the frames whose deadline is already more than one period
+ * old, so the frame processed is never more than one period late. Only
+ * one frame in {@link #getStride()}, the given up ones included, is
+ * detected, the stride growing with the average time of a detected frame
+ * so it fits in 90% of the time available. The frames given up or not
+ * detected are only grabbed and predicted by the tracker.
+ * <p>
+ * Not thread safe, used by the thread processing the stream.
+ */
+public class FrameScheduler {
+
+    private static final double ALPHA = 0.1;      // weight of the last frame in the average
+    private static final double HEADROOM = 0.9;   // part of the period a detected frame may use
+
+    private final long periodNanos;
+    private final int maxStride;
+
+    private long deadline;
+    private double averageNanos;
+    private int stride = 1;
+    private int sinceDetected;
+
+    private long detected;
+    private long predicted;
+    private long dropped;
+
+    /**
+     * @param fps frame rate of the source, 30 if unknown (0 or less)
+     * @param maxStride number of frames per detected frame at most
+     */
+    public FrameScheduler(double fps, int maxStride) {
+        if (maxStride < 1) {
+            throw new IllegalArgumentException("Maximum stride must be positive: " + maxStride);
+        }
+        this.periodNanos = (long) (1e9 / (fps > 0 ? fps : 30));
+        this.maxStride = maxStride;
+    }
+
+    /**
+     * @param now time of the first frame, from {@link System#nanoTime()}
+     */
+    public void start(long now) {
+        deadline = now;
+        sinceDetected = 0;
+    }
+
+    /**
+     * Give up the frames whose deadline passed more than one period ago.
+     *
+     * @return number of frames to grab and predict without showing them
+     */
+    public int lateFrames(long now) {
+        long late = (now - deadline) / periodNanos;
+        if (late <= 0) {
+            return 0;
+        }
+        deadline += late * periodNanos;
+        dropped += late;
+        predicted += late;
+        // the frames given up count in the stride, the detection that made
+        // them late already covers them
+        sinceDetected = (int) Math.min(stride - 1, sinceDetected + late);
+        return (int) Math.min(late, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Take the frame of the current deadline.
+     *
+     * @return true if it is detected, false if it is only predicted
+     */
+    public boolean nextFrameDetected() {
+        deadline += periodNanos;
+        if (++sinceDetected >= stride) {
+            sinceDetected = 0;
+            detected++;
+            return true;
+        }
+        predicted++;
+        return false;
+    }
+
+    /**
+     * @param nanos time taken to detect, track and show a frame
+     */
+    public void processed(long nanos) {
+        averageNanos = averageNanos == 0 ? nanos : averageNanos + ALPHA * (nanos - averageNanos);
+        double needed = Math.ceil(averageNanos / (HEADROOM * periodNanos));
+        stride = (int) Math.max(1, Math.min(maxStride, needed));
+    }
+
+    /**
+     * @return nanoseconds to wait before the next tick, 0 if it is already due
+     */
+    public long delay(long now) {
+        return Math.max(0, deadline - now);
+    }
+
+    public long getPeriodNanos() {
+        return periodNanos;
+    }
+
+    /**
+     * @return number of frames per detected frame
+     */
+    public int getStride() {
+        return stride;
+    }
+
+    /**
+     * @return average time of a detected frame in nanoseconds
+     */
+    public double getAverageNanos() {
+        return averageNanos;
+    }
+
+    public long getDetected() {
+        return detected;
+    }
+
+    /**
+     * @return number of frames only predicted, the dropped ones included
+     */
+    public long getPredicted() {
+        return predicted;
+    }
+
+    /**
+     * @return number of frames given up because they were too late
+     */
+    public long getDropped() {
+        return dropped;
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * Gate deciding which detections may be assigned to a track. The tracker
+ * only looks at the detections within the search radius of a track, in
+ * the spatial grid, and only prices the pairs the gate accepts, so a
+ * rejected pair costs a few comparisons and never reaches the
+ * assignment solver.
+ */
+public interface Gate {
+
+    /**
+     * @return radius around the position of the track outside of which no
+     * detection is accepted, {@code Double.POSITIVE_INFINITY} when the gate
+     * does not depend on the position
+     */
+    double getSearchRadius(TrackStore store, int track);
+
+    /**
+     * @return whether the detection may be assigned to the track
+     */
+    boolean accept(TrackStore store, int track, DetectionBatch detections, int detection);
+
+    /**
+     * @return a gate accepting the pairs accepted by both this gate and the
+     * other one, this gate being checked first
+     */
+    default Gate and(Gate other) {
+        Gate first = this;
+        return new Gate() {
+            @Override
+            public double getSearchRadius(TrackStore store, int track) {
+                return Math.min(first.getSearchRadius(store, track), other.getSearchRadius(store, track));
+            }
+
+            @Override
+            public boolean accept(TrackStore store, int track, DetectionBatch detections, int detection) {
+                return first.accept(store, track, detections, detection)
+                        && other.accept(store, track, detections, detection);
+            }
+        };
+    }
+}
@@ -0,0 +1,127 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the track history written by a {@link HistoryStore}, possibly
+ * while it is being written, by another process or thread. The records
+ * are read in place from the mapped segments and handed to a
+ * {@link HistoryVisitor}, nothing is copied or allocated per record.
+ * <p>
+ * A query only visits the segments whose frame range overlaps the one
+ * asked; in a segment the scan starts at the index block of the first
+ * frame, and for a track skips the blocks whose filter does not hold it.
+ * {@link #refresh()} picks up the segments created and deleted since the
+ * last call. A reader is used by one thread at a time.
+ */
+public class HistoryReader implements AutoCloseable {
+
+    private final Path directory;
+    private final List<HistorySegment> segments = new ArrayList<>();
+
+    public HistoryReader(Path directory) throws IOException {
+        this.directory = directory;
+        refresh();
+    }
+
+    /**
+     * Map the new segments and forget the deleted ones.
+     */
+    public void refresh() throws IOException {
+        segments.removeIf(segment -> !Files.exists(segment.path));
+        List<Path> paths = HistoryStore.list(directory);
+        if (paths.isEmpty()) {
+            return;
+        }
+        long newest = HistoryStore.sequence(paths.get(paths.size() - 1));
+        long from = segments.isEmpty() ? HistoryStore.sequence(paths.get(0))
+                : segments.get(segments.size() - 1).sequence + 1;
+        // a listing racing with the creation of segments may miss some of
+        // them, so the segments up to the newest listed are opened by name
+        for (long sequence = from; sequence <= newest; sequence++) {
+            Path path = HistoryStore.path(directory, sequence);
+            try {
+                segments.add(HistorySegment.open(path, sequence, false));
+            } catch (NoSuchFileException e) {
+                // deleted by the retention
+            } catch (IOException e) {
+                if (sequence == newest) {
+                    // still being created, mapped by a later refresh
+                    break;
+                }
+                System.err.println("Skipping history segment " + path + ": " + e);
+            }
+        }
+    }
+
+    /**
+     * @return number of segments mapped
+     */
+    public int getSegments() {
+        return segments.size();
+    }
+
+    /**
+     * Visit the records of the frames [fromFrame, toFrame], in the order
+     * they were appended.
+     *
+     * @return number of records visited
+     */
+    public long query(long fromFrame, long toFrame, HistoryVisitor visitor) {
+        return query(false, 0, fromFrame, toFrame, visitor);
+    }
+
+    /**
+     * Visit the records of one track in the frames [fromFrame, toFrame].
+     *
+     * @return number of records visited
+     */
+    public long query(int trackId, long fromFrame, long toFrame, HistoryVisitor visitor) {
+        return query(true, trackId, fromFrame, toFrame, visitor);
+    }
+
+    private long query(boolean oneTrack, int trackId, long fromFrame, long toFrame, HistoryVisitor visitor) {
+        long visited = 0;
+        for (HistorySegment segment : segments) {
+            // read the count first, the frames and filters cover these records
+            long committed = segment.getCommitted();
+            if (committed == 0 || segment.getLastFrame() < fromFrame || segment.getFirstFrame() > toFrame) {
+                continue;
+            }
+            for (long k = segment.seek(fromFrame, committed); k < committed; k++) {
+                long frame = segment.getFrame(k);
+                if (frame > toFrame) {
+                    break;
+                }
+                if (oneTrack && k % HistorySegment.BLOCK == 0
+                        && !segment.mayContain(trackId, (int) (k / HistorySegment.BLOCK))) {
+                    // not in this block
+                    k += HistorySegment.BLOCK - 1;
+                    continue;
+                }
+                if (frame < fromFrame) {
+                    continue;
+                }
+                int id = segment.getTrackId(k);
+                if (oneTrack && id != trackId) {
+                    continue;
+                }
+                visitor.visit(id, frame, segment.getX(k), segment.getY(k), segment.getVx(k), segment.getVy(k));
+                visited++;
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Forget the segments, their mappings are released by the garbage
+     * collector.
+     */
+    @Override
+    public void close() {
+        segments.clear();
+    }
+}
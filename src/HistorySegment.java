@@ -0,0 +1,226 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One memory mapped file of the track history, shared by the
+ * {@link HistoryStore} writing it and the {@link HistoryReader}s.
+ * <p>
+ * The file is a header followed by fixed size records (frame, trackId,
+ * x, y, vx, vy). The header holds the number of committed records, the
+ * first and last frame, whether the segment is sealed, a sparse index
+ * giving the frame of every {@link #BLOCK}-th record, and for each block
+ * of records a filter of the track ids it holds. Records are appended in
+ * frame order, so a time range is found with a binary search in the
+ * index, and the records of a track only in the blocks whose filter may
+ * hold it.
+ * <p>
+ * A block filter has 8192 bits, 2 set per track id: with the at most
+ * {@link #BLOCK} ids of a block, one id out of 20 not in it still passes.
+ * The filters grow with the capacity, a few percents of the records.
+ */
+final class HistorySegment {
+
+    static final int MAGIC = 0x54484953;  // "THIS"
+    static final int VERSION = 2;
+    static final int RECORD = 32;         // frame, trackId, unused, x, y, vx, vy
+    static final int BLOCK = 1024;        // records per index entry
+    static final int FILTER_WORDS = 128;  // 8192 bits of the track ids of a block
+
+    // header offsets
+    private static final int CAPACITY = 8;
+    private static final int COMMITTED = 16;
+    private static final int FIRST_FRAME = 24;
+    private static final int LAST_FRAME = 32;
+    private static final int SEALED = 40;
+    private static final int INDEX = 48;
+
+    final Path path;
+    final long sequence;
+    final int capacity;
+    final int blocks;
+    private final int filters;
+    private final int header;
+    private final ByteBuffer map;
+
+    private HistorySegment(Path path, long sequence, ByteBuffer map) {
+        this.path = path;
+        this.sequence = sequence;
+        this.map = map;
+        this.capacity = map.getInt(CAPACITY);
+        this.blocks = blocks(capacity);
+        this.filters = INDEX + 8 * blocks;
+        this.header = headerSize(capacity);
+    }
+
+    /**
+     * Create a new empty segment of the given number of records.
+     */
+    static HistorySegment create(Path path, long sequence, int capacity) throws IOException {
+        long size = headerSize(capacity) + (long) capacity * RECORD;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            map.putInt(0, MAGIC).putInt(4, VERSION).putInt(CAPACITY, capacity);
+            map.putLong(FIRST_FRAME, Long.MAX_VALUE).putLong(LAST_FRAME, Long.MIN_VALUE);
+            return new HistorySegment(path, sequence, map);
+        }
+    }
+
+    /**
+     * Map an existing segment, read only or for writing.
+     *
+     * @throws IOException if the file is not a segment of this version
+     */
+    static HistorySegment open(Path path, long sequence, boolean write) throws IOException {
+        StandardOpenOption[] options = write
+                ? new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE}
+                : new StandardOpenOption[]{StandardOpenOption.READ};
+        try (FileChannel channel = FileChannel.open(path, options)) {
+            if (channel.size() < INDEX) {
+                throw new IOException("Not a history segment: " + path);
+            }
+            MappedByteBuffer map = channel.map(write ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                    0, channel.size());
+            int capacity = map.getInt(CAPACITY);
+            if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION || capacity <= 0
+                    || channel.size() < headerSize(capacity) + (long) capacity * RECORD) {
+                throw new IOException("Not a history segment of version " + VERSION + ": " + path);
+            }
+            return new HistorySegment(path, sequence, map);
+        }
+    }
+
+    static int blocks(int capacity) {
+        return (capacity + BLOCK - 1) / BLOCK;
+    }
+
+    static int headerSize(int capacity) {
+        return (INDEX + (8 + 8 * FILTER_WORDS) * blocks(capacity) + 63) & ~63;
+    }
+
+    /**
+     * @param k 0 or 1
+     * @return k-th bit of the track id in a block filter
+     */
+    static int filterBit(int trackId, int k) {
+        long h = trackId * 0x9e3779b97f4a7c15L;
+        return (int) (h >>> (51 - 13 * k)) & (64 * FILTER_WORDS - 1);
+    }
+
+    void putRecord(long k, long frame, int trackId, double x, double y, double vx, double vy) {
+        int offset = header + (int) k * RECORD;
+        map.putLong(offset, frame);
+        map.putInt(offset + 8, trackId);
+        map.putInt(offset + 12, 0);
+        map.putFloat(offset + 16, (float) x);
+        map.putFloat(offset + 20, (float) y);
+        map.putFloat(offset + 24, (float) vx);
+        map.putFloat(offset + 28, (float) vy);
+        if (k % BLOCK == 0) {
+            map.putLong(INDEX + 8 * (int) (k / BLOCK), frame);
+        }
+    }
+
+    long getFrame(long k) {
+        return map.getLong(header + (int) k * RECORD);
+    }
+
+    int getTrackId(long k) {
+        return map.getInt(header + (int) k * RECORD + 8);
+    }
+
+    float getX(long k) {
+        return map.getFloat(header + (int) k * RECORD + 16);
+    }
+
+    float getY(long k) {
+        return map.getFloat(header + (int) k * RECORD + 20);
+    }
+
+    float getVx(long k) {
+        return map.getFloat(header + (int) k * RECORD + 24);
+    }
+
+    float getVy(long k) {
+        return map.getFloat(header + (int) k * RECORD + 28);
+    }
+
+    /**
+     * @param w word of the filters, FILTER_WORDS per block
+     */
+    void putFilterWord(int w, long word) {
+        map.putLong(filters + 8 * w, word);
+    }
+
+    /**
+     * Make the records before committed visible to the readers, with the
+     * frame range of the records so far; the filters of their blocks are
+     * put before.
+     */
+    void commit(long committed, long firstFrame, long lastFrame) {
+        map.putLong(FIRST_FRAME, firstFrame);
+        map.putLong(LAST_FRAME, lastFrame);
+        map.putLong(COMMITTED, committed);
+    }
+
+    void seal() {
+        map.putInt(SEALED, 1);
+    }
+
+    boolean isSealed() {
+        return map.getInt(SEALED) != 0;
+    }
+
+    long getCommitted() {
+        return map.getLong(COMMITTED);
+    }
+
+    long getFirstFrame() {
+        return map.getLong(FIRST_FRAME);
+    }
+
+    long getLastFrame() {
+        return map.getLong(LAST_FRAME);
+    }
+
+    /**
+     * @return false if the block of records holds no record of the track
+     */
+    boolean mayContain(int trackId, int block) {
+        int offset = filters + 8 * FILTER_WORDS * block;
+        for (int k = 0; k < 2; k++) {
+            int bit = filterBit(trackId, k);
+            if ((map.getLong(offset + 8 * (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return index of a committed record at or before the first one of
+     * the frame, 0 when none
+     */
+    long seek(long frame, long committed) {
+        int lo = 0;
+        int hi = (int) ((committed + BLOCK - 1) / BLOCK) - 1;
+        // last block starting before the frame
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (map.getLong(INDEX + 8 * mid) < frame) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return (long) lo * BLOCK;
+    }
+
+    long getBytes() {
+        return header + (long) capacity * RECORD;
+    }
+}
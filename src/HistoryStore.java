@@ -0,0 +1,321 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Persistent history of the tracks: every frame, the state of each track
+ * (trackId, frame, x, y, vx, vy) is appended to segmented memory mapped
+ * files, kept after the traces of the tracks have dropped the points.
+ * Read them with a {@link HistoryReader}, in the same process or another
+ * one, while the store keeps writing.
+ * <p>
+ * Appending takes no lock: a writer reserves its records in the current
+ * segment with one atomic add, writes them in place, then publishes them
+ * once the records reserved before are published, so readers only see
+ * whole batches. The writer whose batch crosses the end of a segment
+ * seals it and opens the next one, the others wait for the new segment.
+ * Readers of another process rely on the platform keeping the order of
+ * the stores to the mapped memory, as x86 does.
+ * <p>
+ * When a segment is opened, the oldest ones are deleted while there are
+ * more than maxBytes of segments, or while their last frame is more than
+ * maxAgeFrames before the frame being written. Frames must be appended
+ * in non decreasing order. When the first frame appended is not after the
+ * last one of the segments kept from the previous runs, e.g. a tracker
+ * restarted without its snapshot counts from 1 again, the frames of the
+ * run are shifted by {@link #getFrameOffset()} to follow them.
+ */
+public class HistoryStore implements AutoCloseable {
+
+    static final String PREFIX = "history-";
+    static final String SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int segmentRecords;
+    private final long maxBytes;
+    private final long maxAgeFrames;
+
+    private volatile Writable current;
+    private final ArrayDeque<HistorySegment> sealed = new ArrayDeque<>();  // oldest first, guarded by this
+    private long nextSequence;
+    private long storedFrame = Long.MIN_VALUE;  // last frame of the previous runs
+    private volatile long frameOffset = -1;     // added to the frames of this run, -1 until the first append
+    private volatile boolean closed;
+    private final AtomicLong appended = new AtomicLong();
+
+    /**
+     * @param directory directory of the segments, created if missing
+     * @param segmentRecords number of records of a segment
+     * @param maxBytes bytes of segments kept at most, 0 for no limit
+     * @param maxAgeFrames frames of history kept at most, 0 for no limit
+     */
+    public HistoryStore(Path directory, int segmentRecords, long maxBytes, long maxAgeFrames) throws IOException {
+        if (segmentRecords < 1) {
+            throw new IllegalArgumentException("Segment records must be positive: " + segmentRecords);
+        }
+        this.directory = directory;
+        this.segmentRecords = segmentRecords;
+        this.maxBytes = maxBytes;
+        this.maxAgeFrames = maxAgeFrames;
+        Files.createDirectories(directory);
+
+        // the segments of a previous run are kept, sealed, and a new one is started
+        for (Path path : list(directory)) {
+            // after the skipped segments too, their files are left in place
+            nextSequence = sequence(path) + 1;
+            try {
+                HistorySegment segment = HistorySegment.open(path, sequence(path), true);
+                if (!segment.isSealed()) {
+                    segment.seal();
+                }
+                if (segment.getCommitted() > 0) {
+                    storedFrame = Math.max(storedFrame, segment.getLastFrame());
+                }
+                sealed.add(segment);
+            } catch (IOException e) {
+                System.err.println("Skipping history segment " + path + ": " + e);
+            }
+        }
+        current = new Writable(HistorySegment.create(path(nextSequence), nextSequence, segmentRecords));
+        nextSequence++;
+    }
+
+    /**
+     * Append the state of every track of the tracker, on the thread running
+     * its updates.
+     */
+    public void append(Tracker tracker) throws IOException {
+        append(tracker.getFrame(), tracker.getStore());
+    }
+
+    /**
+     * Append the state of every track of the store at the frame.
+     */
+    public void append(long frame, TrackStore store) throws IOException {
+        int n = store.size();
+        if (n == 0) {
+            return;
+        }
+        if (n > segmentRecords) {
+            throw new IllegalArgumentException(n + " tracks do not fit in a segment of " + segmentRecords);
+        }
+        long offset = frameOffset;
+        frame += offset >= 0 ? offset : startRun(frame);
+        while (true) {
+            if (closed) {
+                throw new IOException("History store closed");
+            }
+            Writable segment = current;
+            long start = segment.reserved.getAndAdd(n);
+            if (start + n <= segment.capacity) {
+                for (int i = 0; i < n; i++) {
+                    segment.file.putRecord(start + i, frame, store.getId(i), store.getX(i), store.getY(i),
+                            store.getVx(i), store.getVy(i));
+                    segment.addTrack(start + i, store.getId(i));
+                }
+                segment.publish(start, n, frame);
+                appended.addAndGet(n);
+                return;
+            }
+            if (start <= segment.capacity) {
+                // this batch crosses the end of the segment
+                roll(segment, start, frame);
+            } else {
+                awaitRoll(segment);
+            }
+        }
+    }
+
+    /**
+     * @return number of records appended since the store was opened
+     */
+    public long getAppended() {
+        return appended.get();
+    }
+
+    /**
+     * @return number added to the frames appended by this run, so they
+     * follow the frames of the previous runs; 0 before the first append
+     */
+    public long getFrameOffset() {
+        return Math.max(0, frameOffset);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return number of segments, the current one included
+     */
+    public synchronized int getSegments() {
+        return sealed.size() + 1;
+    }
+
+    /**
+     * Seal the current segment, once every append returned.
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            current.file.seal();
+            notifyAll();
+        }
+    }
+
+    /**
+     * Set the frame offset of the run at its first append.
+     */
+    private synchronized long startRun(long frame) {
+        if (frameOffset < 0) {
+            frameOffset = frame > storedFrame ? 0 : storedFrame + 1 - frame;
+        }
+        return frameOffset;
+    }
+
+    /**
+     * Wait until the writer whose batch crossed the end of the full
+     * segment opened the next one.
+     */
+    private synchronized void awaitRoll(Writable segment) throws InterruptedIOException {
+        while (current == segment && !closed) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the next history segment");
+            }
+        }
+    }
+
+    /**
+     * Seal the full segment at the end of the batches published before
+     * start, open the next one, wake the writers waiting for it and apply
+     * the retention.
+     */
+    private synchronized void roll(Writable segment, long start, long frame) throws IOException {
+        segment.awaitPublished(start);
+        segment.file.seal();
+        sealed.add(segment.file);
+        try {
+            current = new Writable(HistorySegment.create(path(nextSequence), nextSequence, segmentRecords));
+            nextSequence++;
+        } catch (IOException e) {
+            closed = true;
+            throw e;
+        } finally {
+            notifyAll();
+        }
+        long bytes = current.file.getBytes();
+        for (HistorySegment s : sealed) {
+            bytes += s.getBytes();
+        }
+        while (!sealed.isEmpty()) {
+            HistorySegment oldest = sealed.peekFirst();
+            boolean tooBig = maxBytes > 0 && bytes > maxBytes;
+            boolean tooOld = maxAgeFrames > 0 && oldest.getLastFrame() < frame - maxAgeFrames;
+            if (!tooBig && !tooOld) {
+                break;
+            }
+            sealed.removeFirst();
+            bytes -= oldest.getBytes();
+            // the readers mapping it keep their mapping
+            Files.deleteIfExists(oldest.path);
+        }
+    }
+
+    private Path path(long sequence) {
+        return path(directory, sequence);
+    }
+
+    static Path path(Path directory, long sequence) {
+        return directory.resolve(String.format("%s%020d%s", PREFIX, sequence, SUFFIX));
+    }
+
+    static long sequence(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * @return the segments of the directory, oldest first
+     */
+    static List<Path> list(Path directory) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path path : stream) {
+                paths.add(path);
+            }
+        }
+        Collections.sort(paths);
+        return paths;
+    }
+
+    /**
+     * Segment being written with its reservation and publication counters.
+     */
+    private static final class Writable {
+        final HistorySegment file;
+        final long capacity;
+        final AtomicLong reserved = new AtomicLong();
+        final AtomicLong published = new AtomicLong();
+        final AtomicLongArray filters;  // FILTER_WORDS per block
+        private long firstFrame = Long.MAX_VALUE;
+        private long lastFrame = Long.MIN_VALUE;
+
+        Writable(HistorySegment file) {
+            this.file = file;
+            this.capacity = file.capacity;
+            this.filters = new AtomicLongArray(file.blocks * HistorySegment.FILTER_WORDS);
+        }
+
+        /**
+         * Add the track of record k to the filter of its block.
+         */
+        void addTrack(long k, int trackId) {
+            int block = (int) (k / HistorySegment.BLOCK);
+            for (int b = 0; b < 2; b++) {
+                int bit = HistorySegment.filterBit(trackId, b);
+                long mask = 1L << bit;
+                int w = block * HistorySegment.FILTER_WORDS + (bit >>> 6);
+                long word = filters.get(w);
+                while ((word & mask) == 0 && !filters.compareAndSet(w, word, word | mask)) {
+                    word = filters.get(w);
+                }
+            }
+        }
+
+        /**
+         * Publish the records [start, start + n) after the ones before
+         * them; only one batch at a time gets here.
+         */
+        void publish(long start, int n, long frame) {
+            awaitPublished(start);
+            firstFrame = Math.min(firstFrame, frame);
+            lastFrame = Math.max(lastFrame, frame);
+            // the filters of the blocks of the batch, with the tracks of the batches before
+            int from = (int) (start / HistorySegment.BLOCK) * HistorySegment.FILTER_WORDS;
+            int to = (int) ((start + n - 1) / HistorySegment.BLOCK + 1) * HistorySegment.FILTER_WORDS;
+            for (int w = from; w < to; w++) {
+                file.putFilterWord(w, filters.get(w));
+            }
+            file.commit(start + n, firstFrame, lastFrame);
+            published.set(start + n);
+        }
+
+        void awaitPublished(long count) {
+            while (published.get() != count) {
+                Thread.yield();
+            }
+        }
+    }
+}
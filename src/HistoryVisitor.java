@@ -0,0 +1,8 @@
+/**
+ * Receives the records of a {@link HistoryReader} query, read in place
+ * from the mapped segments.
+ */
+public interface HistoryVisitor {
+
+    void visit(int trackId, long frame, float x, float y, float vx, float vy);
+}
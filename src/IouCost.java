@@ -0,0 +1,63 @@
+/**
+ * Size aware cost: one minus the intersection over union of the enclosing
+ * circle of the track and the one of the detection. The radius of a track
+ * is the one of the last detection assigned to it. Pairs overlapping
+ * less than the minimum IoU are rejected.
+ * <p>
+ * When the track or the detection has no radius (e.g. detections known
+ * by their center only) the IoU cannot be computed, the pair is priced 1,
+ * the cost of disjoint circles, and left to the gate.
+ */
+public class IouCost implements CostFunction {
+
+    private final double minIou;
+
+    public IouCost() {
+        this(0);
+    }
+
+    /**
+     * @param minIou smallest accepted IoU, 0 keeps the disjoint pairs
+     */
+    public IouCost(double minIou) {
+        this.minIou = minIou;
+    }
+
+    @Override
+    public double cost(TrackStore store, int track, DetectionBatch detections, int detection) {
+        double r1 = store.getRadius(track);
+        double r2 = detections.getRadius(detection);
+        if (r1 <= 0 || r2 <= 0) {
+            return 1;
+        }
+        double dx = store.getX(track) - detections.getX(detection);
+        double dy = store.getY(track) - detections.getY(detection);
+        double iou = iou(r1, r2, Math.sqrt(dx * dx + dy * dy));
+        return iou >= minIou ? 1 - iou : REJECT;
+    }
+
+    /**
+     * @return intersection over union of two circles of radius r1 and r2
+     * whose centers are d apart
+     */
+    public static double iou(double r1, double r2, double d) {
+        if (d >= r1 + r2) {
+            return 0;
+        }
+        double a1 = Math.PI * r1 * r1;
+        double a2 = Math.PI * r2 * r2;
+        double inter;
+        if (d <= Math.abs(r1 - r2)) {
+            inter = Math.min(a1, a2);   // one circle inside the other
+        } else {
+            // area of the lens, sum of two circular segments
+            double c1 = (d * d + r1 * r1 - r2 * r2) / (2 * d * r1);
+            double c2 = (d * d + r2 * r2 - r1 * r1) / (2 * d * r2);
+            double s = (-d + r1 + r2) * (d + r1 - r2) * (d - r1 + r2) * (d + r1 + r2);
+            inter = r1 * r1 * Math.acos(Math.max(-1, Math.min(1, c1)))
+                    + r2 * r2 * Math.acos(Math.max(-1, Math.min(1, c2)))
+                    - 0.5 * Math.sqrt(Math.max(0, s));
+        }
+        return inter / (a1 + a2 - inter);
+    }
+}
@@ -0,0 +1,167 @@
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Exposes the metrics as a read only MBean of the platform MBean server.
+ * The MBean is registered at the first export and reads the metrics when
+ * an attribute is read, so the values are always current: Frames,
+ * Tracks, Created, Deleted, Coasting, Predicted, Dropped, then for each stage, e.g. COST:
+ * COSTCount, COSTMeanMicros, COSTP50Micros, COSTP99Micros,
+ * COSTP999Micros and COSTMaxMicros.
+ */
+public class JmxMetricsExporter implements MetricsExporter {
+
+    private static final String[] COUNTERS = {"Frames", "Tracks", "Created", "Deleted", "Coasting", "Predicted",
+            "Dropped"};
+    private static final String[] STATISTICS = {"Count", "MeanMicros", "P50Micros", "P99Micros", "P999Micros",
+            "MaxMicros"};
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private final ObjectName name;
+    private volatile Metrics metrics;
+
+    /**
+     * @param name object name of the MBean, e.g. "tracker:type=Metrics,stream=cam1"
+     */
+    public JmxMetricsExporter(String name) {
+        try {
+            this.name = new ObjectName(name);
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Invalid MBean name: " + name, e);
+        }
+    }
+
+    @Override
+    public synchronized void export(Metrics metrics) {
+        if (this.metrics == metrics) {
+            return;
+        }
+        this.metrics = metrics;
+        try {
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new MetricsMBean(), name);
+            }
+        } catch (JMException e) {
+            System.err.println("Impossible to register the metrics MBean " + name + ": " + e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            System.err.println("Impossible to unregister the metrics MBean " + name + ": " + e);
+        }
+        metrics = null;
+    }
+
+    private Object read(String attribute) throws AttributeNotFoundException {
+        Metrics metrics = this.metrics;
+        if (metrics == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        switch (attribute) {
+            case "Frames":
+                return metrics.getFrames();
+            case "Tracks":
+                return (long) metrics.getTracks();
+            case "Created":
+                return metrics.getCreated();
+            case "Deleted":
+                return metrics.getDeleted();
+            case "Coasting":
+                return (long) metrics.getCoasting();
+            case "Predicted":
+                return metrics.getPredicted();
+            case "Dropped":
+                return metrics.getDropped();
+        }
+        for (Metrics.Stage stage : Metrics.Stage.values()) {
+            if (attribute.startsWith(stage.name())) {
+                LatencyRecorder recorder = metrics.getRecorder(stage);
+                switch (attribute.substring(stage.name().length())) {
+                    case "Count":
+                        return recorder.getCount();
+                    case "MeanMicros":
+                        return (long) recorder.getMean() / 1000;
+                    case "P50Micros":
+                        return recorder.percentile(50) / 1000;
+                    case "P99Micros":
+                        return recorder.percentile(99) / 1000;
+                    case "P999Micros":
+                        return recorder.percentile(99.9) / 1000;
+                    case "MaxMicros":
+                        return recorder.getMax() / 1000;
+                }
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    private class MetricsMBean implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            return read(attribute);
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Read only attribute: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                try {
+                    list.add(new Attribute(attribute, read(attribute)));
+                } catch (AttributeNotFoundException e) {
+                    // left out, as specified by DynamicMBean
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String action, Object[] params, String[] signature) throws ReflectionException {
+            // no operation, as told by the MBeanInfo
+            throw new ReflectionException(new NoSuchMethodException(action), "No operation " + action);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (String counter : COUNTERS) {
+                attributes.add(new MBeanAttributeInfo(counter, "long", counter, true, false, false));
+            }
+            for (Metrics.Stage stage : Metrics.Stage.values()) {
+                for (String statistic : STATISTICS) {
+                    String attribute = stage.name() + statistic;
+                    attributes.add(new MBeanAttributeInfo(attribute, "long", attribute, true, false, false));
+                }
+            }
+            return new MBeanInfo(JmxMetricsExporter.class.getName(), "Tracking loop metrics",
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+    }
+}
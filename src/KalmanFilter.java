@@ -1,112 +1,113 @@
-import org.ejml.simple.SimpleMatrix;
-
 /**
  Kalman Filter class keeps track of the estimated state of
  the system and the variance or uncertainty of the estimate.
  Predict and Correct methods implement the functionality
  Reference: https://en.wikipedia.org/wiki/Kalman_filter
+
+ The filter uses a constant velocity model on the state
+ u = [x, y, vx, vy] and observes the position (x, y) only.
+ The state is held in a {@link TrackStore} of a single track, so a
+ filter and the tracks of the tracker share one implementation of the
+ equations, see {@link TrackStore#predictAll(double)} and
+ {@link TrackStore#correct(int, double, double)}. Neither predict() nor
+ correct() allocates anything.
  Attributes: None
  */
 public class KalmanFilter {
 
     private double dt = 0.005;  // delta time
 
-    private SimpleMatrix A;
-    private SimpleMatrix u;
-
-    // (x,y) tracking object center
-    private SimpleMatrix b;
-    private SimpleMatrix P;
-    private SimpleMatrix F;
+    // State vector u and covariance matrix P, in slot 0
+    private final TrackStore store = new TrackStore(1);
 
-    private SimpleMatrix Q;
-    private SimpleMatrix R;
-    private SimpleMatrix lastResult;
+    // Vector of observations b of the last result
+    private double lastX, lastY;
 
 
     public KalmanFilter() {
-        A = new SimpleMatrix(new double[][]{{1,0},{0,1}}); // matrix in observation equations
-        u = new SimpleMatrix(2,1); // previous state vector
+        // state at the origin, covariance matrix 3 * I
+        store.add(0, 0, 0);
 
-        b = new SimpleMatrix(new double[][]{{0},{255}}); // vector of observations
-        P = new SimpleMatrix(new double[][]{{3,0},{0,3}}); // covariance matrix
-        F = new SimpleMatrix(new double[][]{{1,dt},{0,1}}); // state transition mat
+        lastX = 0;
+        lastY = 255;
+    }
 
-        Q = SimpleMatrix.identity(2); // process noise matrix
-        R = SimpleMatrix.identity(2); // observation noise matrix
-        lastResult = new SimpleMatrix(new double[][]{{0},{255}});
+    public KalmanFilter(double dt) {
+        this();
+        this.dt = dt;
     }
 
-    /** Predict state vector u and variance of uncertainty P (covariance).
-     where,
-     u: previous state vector
-     P: previous covariance matrix
-     F: state transition matrix
-     Q: process noise matrix
-     Equations:
-     u'_{k|k-1} = Fu'_{k-1|k-1}
-     P_{k|k-1} = FP_{k-1|k-1} F.T + Q
-     where,
-     F.T is F transpose
-     * return vector of predicted state estimate
+    /**
+     * Predict state vector u and variance of uncertainty P (covariance),
+     * see {@link TrackStore#predictAll(double)}.
      */
     public void predict() {
-        // Predicted state estimate
-        u = roundMatrix(F.mult(u));
-        // Predicted estimate covariance
-        P = F.mult(P.mult(F.transpose())).plus(Q);
-        lastResult = u; // same last predicted result
+        predict(dt);
     }
 
+    /**
+     * Same as {@link #predict()} with an explicit time step.
+     *
+     * @param dt time elapsed since the last prediction
+     */
+    public void predict(double dt) {
+        store.predictAll(dt);
 
+        // same last predicted result
+        lastX = store.getX(0);
+        lastY = store.getY(0);
+    }
 
-    /** Correct or update state vector u and variance of uncertainty P (covariance).
-        where,
-        u: predicted state vector u
-        A: matrix in observation equations
-        b: vector of observations
-        P: predicted covariance matrix
-        Q: process noise matrix
-        R: observation noise matrix
-        Equations:
-            C = AP_{k|k-1} A.T + R
-            K_{k} = P_{k|k-1} A.T(C.Inv)
-            u'_{k|k} = u'_{k|k-1} + K_{k}(b_{k} - Au'_{k|k-1})
-            P_{k|k} = P_{k|k-1} - K_{k}(CK.T)
-            where,
-                A.T is A transpose
-                C.Inv is C inverse
-     * @param b vector of observations
+
+    /**
+     * Correct or update state vector u and variance of uncertainty P
+     * (covariance), see {@link TrackStore#correct(int, double, double)}.
+     *
+     * @param bx observed x
+     * @param by observed y
      * @param flag if "true" prediction result will be updated else detection
-     * @return predicted state vector u
      */
-    public SimpleMatrix correct(SimpleMatrix b, boolean flag) {
+    public void correct(double bx, double by, boolean flag) {
         if(!flag) { // update using prediction
-            this.b = lastResult;
-        } else {
-            this.b = b;
+            return;
+        }
 
-            SimpleMatrix C = A.mult(P).mult(A.transpose()).plus(R);
-            SimpleMatrix K = P.mult(A.transpose().mult(C.invert()));
+        store.correct(0, bx, by);
 
-            u = roundMatrix(u.plus(K.mult(this.b.minus(A.mult(u)))));
-            P = P.minus(K.mult(C.mult(K.transpose())));
-            lastResult = u;
-        }
+        lastX = store.getX(0);
+        lastY = store.getY(0);
+    }
 
-        return u;
+    public void setLastResult(double lastX, double lastY) {
+        this.lastX = lastX;
+        this.lastY = lastY;
     }
 
-    public void setLastResult(SimpleMatrix lastResult) {
-        this.lastResult = lastResult;
+    public double getLastX() {
+        return lastX;
     }
 
-    private SimpleMatrix roundMatrix(SimpleMatrix M) {
-        for(int j = 0; j < M.numCols(); j++) {
-            for(int i = 0; i < M.numRows(); i++) {
-                M.set(i, j, Math.round(M.get(i, j)));
-            }
-        }
-        return M;
+    public double getLastY() {
+        return lastY;
+    }
+
+    public double getX() {
+        return store.getX(0);
+    }
+
+    public double getY() {
+        return store.getY(0);
+    }
+
+    public double getVx() {
+        return store.getVx(0);
+    }
+
+    public double getVy() {
+        return store.getVy(0);
+    }
+
+    public double getDt() {
+        return dt;
     }
 }
@@ -0,0 +1,108 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations in nanoseconds with log-linear buckets, in the
+ * manner of HdrHistogram: every power of two is split in 32 linear
+ * buckets, so any value is kept with a relative error below about 3% in
+ * a fixed array of counters, whatever its magnitude.
+ * <p>
+ * Recording is a few arithmetic operations and one atomic increment, it
+ * never allocates and can be done from any thread. Percentiles are read
+ * from the live counters, they are consistent once recording stops.
+ */
+public class LatencyRecorder {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;          // buckets per power of two
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param nanos a duration, negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.incrementAndGet(bucket(nanos));
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+        long m;
+        while (nanos > (m = max.get()) && !max.compareAndSet(m, nanos)) {
+            // retry
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) total.get() / n;
+    }
+
+    /**
+     * @param p percentile, between 0 and 100
+     * @return the highest value of the bucket holding the percentile, 0
+     * when nothing was recorded
+     */
+    public long percentile(double p) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p / 100 * n));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += counts.get(b);
+            if (seen >= rank) {
+                return Math.min(highest(b), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int b = 0; b < BUCKETS; b++) {
+            counts.set(b, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Values below 2 * SUB_COUNT have a bucket each, above that the bucket
+     * is given by the position of the highest bit and the SUB_BITS + 1
+     * bits below it.
+     */
+    static int bucket(long value) {
+        if (value < 2 * SUB_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return shift * SUB_COUNT + (int) (value >>> shift);
+    }
+
+    /**
+     * @return the highest value falling in the bucket
+     */
+    static long highest(int bucket) {
+        if (bucket < 2 * SUB_COUNT) {
+            return bucket;
+        }
+        int shift = bucket / SUB_COUNT - 1;
+        long lowest = (long) (bucket - shift * SUB_COUNT) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,53 @@
+import java.io.PrintStream;
+
+/**
+ * Prints the metrics as one line per export: the frame rate since the
+ * previous export, the track counters, then count, p50, p99 and max in
+ * microseconds of each stage that recorded something, e.g.
+ * <pre>
+ * fps=29.8 frames=1200 tracks=41 created=57 deleted=16 coasting=3 predicted=0 dropped=0 COST=1200/85/240/910us ...
+ * </pre>
+ */
+public class LogMetricsExporter implements MetricsExporter {
+
+    private final PrintStream out;
+    private long lastFrames;
+    private long lastNanos = System.nanoTime();
+
+    public LogMetricsExporter() {
+        this(System.out);
+    }
+
+    public LogMetricsExporter(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public synchronized void export(Metrics metrics) {
+        long now = System.nanoTime();
+        long frames = metrics.getFrames();
+        double fps = (frames - lastFrames) * 1e9 / Math.max(1, now - lastNanos);
+        lastFrames = frames;
+        lastNanos = now;
+
+        StringBuilder line = new StringBuilder(256);
+        line.append(String.format("fps=%.1f", fps))
+                .append(" frames=").append(frames)
+                .append(" tracks=").append(metrics.getTracks())
+                .append(" created=").append(metrics.getCreated())
+                .append(" deleted=").append(metrics.getDeleted())
+                .append(" coasting=").append(metrics.getCoasting())
+                .append(" predicted=").append(metrics.getPredicted())
+                .append(" dropped=").append(metrics.getDropped());
+        for (Metrics.Stage stage : Metrics.Stage.values()) {
+            LatencyRecorder recorder = metrics.getRecorder(stage);
+            if (recorder.getCount() > 0) {
+                line.append(' ').append(stage).append('=').append(recorder.getCount())
+                        .append('/').append(recorder.percentile(50) / 1000)
+                        .append('/').append(recorder.percentile(99) / 1000)
+                        .append('/').append(recorder.getMax() / 1000).append("us");
+            }
+        }
+        out.println(line);
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Gate and cost on the Mahalanobis distance between the predicted
+ * position of the track and the detection. The distance is measured with
+ * the innovation covariance of the Kalman filter, S = APA.T + R, so an
+ * uncertain track, e.g. one missed for a few frames, looks farther than a
+ * confirmed one and the gate adapts to each track.
+ * <p>
+ * The squared distance follows a chi-square law with 2 degrees of
+ * freedom for a right pair, a threshold of 9.21 keeps 99% of them and
+ * 5.99 keeps 95%. As a cost, the squared distance is used.
+ */
+public class MahalanobisGate implements Gate, CostFunction {
+
+    public static final double CHI2_99 = 9.21;
+    public static final double CHI2_95 = 5.99;
+
+    private final double threshold;
+
+    public MahalanobisGate() {
+        this(CHI2_99);
+    }
+
+    /**
+     * @param threshold largest accepted squared Mahalanobis distance
+     */
+    public MahalanobisGate(double threshold) {
+        this.threshold = threshold;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * The accepted detections lie in an ellipse whose largest half axis is
+     * sqrt(threshold * l), l being the largest eigenvalue of S.
+     */
+    @Override
+    public double getSearchRadius(TrackStore store, int track) {
+        double r = store.getObservationNoise();
+        double s00 = store.getP00(track) + r;
+        double s01 = store.getP01(track);
+        double s11 = store.getP11(track) + r;
+        double half = 0.5 * (s00 - s11);
+        double largest = 0.5 * (s00 + s11) + Math.sqrt(half * half + s01 * s01);
+        return Math.sqrt(threshold * largest);
+    }
+
+    @Override
+    public boolean accept(TrackStore store, int track, DetectionBatch detections, int detection) {
+        return distance2(store, track, detections, detection) <= threshold;
+    }
+
+    @Override
+    public double cost(TrackStore store, int track, DetectionBatch detections, int detection) {
+        double d2 = distance2(store, track, detections, detection);
+        return d2 <= threshold ? d2 : REJECT;
+    }
+
+    /**
+     * @return squared Mahalanobis distance e.T(S.Inv)e of the innovation e
+     */
+    public double distance2(TrackStore store, int track, DetectionBatch detections, int detection) {
+        double r = store.getObservationNoise();
+        double s00 = store.getP00(track) + r;
+        double s01 = store.getP01(track);
+        double s11 = store.getP11(track) + r;
+        double det = s00 * s11 - s01 * s01;
+        double ex = detections.getX(detection) - store.getX(track);
+        double ey = detections.getY(detection) - store.getY(track);
+        return (s11 * ex * ex - 2 * s01 * ex * ey + s00 * ey * ey) / det;
+    }
+}
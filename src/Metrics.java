@@ -0,0 +1,178 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency of each stage of the tracking loop and counters of the tracks,
+ * shared by the {@link Tracker} and the code feeding it.
+ * <p>
+ * A stage is timed with {@link #start()} and {@link #lap(Stage, long)}:
+ * <pre>
+ *     long t = metrics.start();
+ *     ...
+ *     t = metrics.lap(Stage.COST, t);
+ * </pre>
+ * The {@link #DISABLED} instance, used by default, skips the clock and
+ * the recording, so the instrumentation only costs a test on a final
+ * field.
+ */
+public class Metrics {
+
+    /**
+     * Stages of the tracking loop.
+     */
+    public enum Stage {
+        DETECT,  // Detectors.detect
+        COST,    // gating and cost matrix
+        ASSIGN,  // assignment of the detections to the tracks, unassigned ones
+        KALMAN,  // Kalman predict and correct, new tracks
+        TRACE,   // trace maintenance
+        RENDER   // trace drawing and conversion of the frame for display
+    }
+
+    public static final Metrics DISABLED = new Metrics(false);
+
+    private final boolean enabled;
+    private final LatencyRecorder[] byStage = new LatencyRecorder[Stage.values().length];
+
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+    private final AtomicLong predicted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile int coasting;
+    private volatile int tracks;
+
+    public Metrics() {
+        this(true);
+    }
+
+    private Metrics(boolean enabled) {
+        this.enabled = enabled;
+        for (Stage stage : Stage.values()) {
+            byStage[stage.ordinal()] = new LatencyRecorder();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the current time, or 0 when disabled
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record the time elapsed since the start of a stage.
+     *
+     * @param start value returned by {@link #start()} or by the previous lap
+     * @return the current time, start of the next stage
+     */
+    public long lap(Stage stage, long start) {
+        if (!enabled) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        byStage[stage.ordinal()].record(now - start);
+        return now;
+    }
+
+    /**
+     * Count the tracks of one frame of the tracker.
+     *
+     * @param created tracks created during the frame
+     * @param deleted tracks deleted during the frame
+     * @param coasting tracks without detection during the frame
+     * @param tracks tracks after the frame
+     */
+    public void frame(int created, int deleted, int coasting, int tracks) {
+        if (!enabled) {
+            return;
+        }
+        frames.incrementAndGet();
+        this.created.addAndGet(created);
+        this.deleted.addAndGet(deleted);
+        this.coasting = coasting;
+        this.tracks = tracks;
+    }
+
+    /**
+     * Count a frame the tracker only predicted, without detection.
+     */
+    public void predicted() {
+        if (enabled) {
+            predicted.incrementAndGet();
+        }
+    }
+
+    /**
+     * Count frames of the source dropped to catch up with real time.
+     */
+    public void dropped(int frames) {
+        if (enabled) {
+            dropped.addAndGet(frames);
+        }
+    }
+
+    public LatencyRecorder getRecorder(Stage stage) {
+        return byStage[stage.ordinal()];
+    }
+
+    /**
+     * @return number of frames processed by the tracker
+     */
+    public long getFrames() {
+        return frames.get();
+    }
+
+    public long getCreated() {
+        return created.get();
+    }
+
+    public long getDeleted() {
+        return deleted.get();
+    }
+
+    /**
+     * @return number of frames only predicted by the tracker
+     */
+    public long getPredicted() {
+        return predicted.get();
+    }
+
+    /**
+     * @return number of frames of the source dropped to catch up
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return tracks without detection at the last frame
+     */
+    public int getCoasting() {
+        return coasting;
+    }
+
+    /**
+     * @return tracks after the last frame
+     */
+    public int getTracks() {
+        return tracks;
+    }
+
+    /**
+     * Clear the recorders and the counters.
+     */
+    public void reset() {
+        for (LatencyRecorder recorder : byStage) {
+            recorder.reset();
+        }
+        frames.set(0);
+        created.set(0);
+        deleted.set(0);
+        predicted.set(0);
+        dropped.set(0);
+    }
+}
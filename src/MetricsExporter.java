@@ -0,0 +1,17 @@
+/**
+ * Publishes {@link Metrics}, called periodically by a {@link MetricsReporter}.
+ */
+public interface MetricsExporter extends AutoCloseable {
+
+    /**
+     * Publish the current state of the metrics.
+     */
+    void export(Metrics metrics);
+
+    /**
+     * Release what the exporter registered, nothing by default.
+     */
+    @Override
+    default void close() {
+    }
+}
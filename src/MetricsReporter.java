@@ -0,0 +1,48 @@
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls a {@link MetricsExporter} at a fixed period on a daemon thread.
+ */
+public class MetricsReporter implements AutoCloseable {
+
+    private final Metrics metrics;
+    private final MetricsExporter exporter;
+    private final ScheduledExecutorService timer;
+
+    public MetricsReporter(Metrics metrics, MetricsExporter exporter, long period, TimeUnit unit) {
+        this.metrics = metrics;
+        this.exporter = exporter;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer.scheduleAtFixedRate(this::export, period, period, unit);
+    }
+
+    private void export() {
+        try {
+            exporter.export(metrics);
+        } catch (RuntimeException e) {
+            System.err.println("Exception in metrics exporter: " + e);
+        }
+    }
+
+    /**
+     * Stop the timer, export a last time and close the exporter.
+     */
+    @Override
+    public void close() {
+        timer.shutdown();
+        try {
+            timer.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            System.err.println("Interrupted while stopping the metrics reporter: " + e);
+            Thread.currentThread().interrupt();
+        }
+        export();
+        exporter.close();
+    }
+}
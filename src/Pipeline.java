@@ -0,0 +1,296 @@
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.videoio.VideoCapture;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Headless processing pipeline: capture, detection, tracking and
+ * rendering each run on their own thread and are linked by bounded
+ * queues, so a slow frame in one stage does not delay the capture of the
+ * next ones. Each queue has its own {@link Backpressure} policy; dropped
+ * frames release their native memory.
+ * <p>
+ * The pipeline does not use JavaFX, the rendered frames are handed to a
+ * {@link FrameSink} which may display them, encode them or ignore them.
+ */
+public class Pipeline {
+
+    /**
+     * Source of the frames, e.g. a {@link VideoCapture}.
+     */
+    public interface FrameSource {
+        /**
+         * @param frame the frame to fill
+         * @return false at the end of the stream
+         */
+        boolean read(Mat frame);
+    }
+
+    /**
+     * Last stage of the pipeline, called on the render thread.
+     */
+    public interface FrameSink {
+        void accept(Frame frame);
+    }
+
+    /**
+     * A frame on its way through the pipeline.
+     */
+    public static final class Frame {
+        private final long index;
+        private final Mat image;
+        private DetectionBatch detections;
+        private List<TrackTrace> tracks;
+
+        Frame(long index, Mat image) {
+            this.index = index;
+            this.image = image;
+        }
+
+        public long getIndex() {
+            return index;
+        }
+
+        public Mat getImage() {
+            return image;
+        }
+
+        public DetectionBatch getDetections() {
+            return detections;
+        }
+
+        /**
+         * @return the tracks after the update of this frame
+         */
+        public List<TrackTrace> getTracks() {
+            return tracks;
+        }
+    }
+
+    /**
+     * Copy of the trace of a track, safe to read while the tracker moves on.
+     */
+    public static final class TrackTrace {
+        private final int trackId;
+        private final TraceBuffer trace;
+
+        TrackTrace(int trackId, TraceBuffer trace) {
+            this.trackId = trackId;
+            this.trace = trace;
+        }
+
+        public int getTrackId() {
+            return trackId;
+        }
+
+        public TraceBuffer getTrace() {
+            return trace;
+        }
+    }
+
+    private static final Frame END = new Frame(-1, null);
+
+    private final FrameSource source;
+    private final Detectors detectors;
+    private final Tracker tracker;
+    private final FrameSink sink;
+    private final TraceRenderer renderer = new TraceRenderer();
+
+    private final BoundedQueue<Frame> captured;
+    private final BoundedQueue<Frame> detected;
+    private final BoundedQueue<Frame> tracked;
+
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+
+    /**
+     * @param capacity capacity of each queue
+     * @param capturePolicy policy between capture and detection
+     * @param detectPolicy policy between detection and tracking
+     * @param trackPolicy policy between tracking and rendering
+     */
+    public Pipeline(FrameSource source, Detectors detectors, Tracker tracker, FrameSink sink, int capacity,
+                    Backpressure capturePolicy, Backpressure detectPolicy, Backpressure trackPolicy) {
+        this.source = source;
+        this.detectors = detectors;
+        this.tracker = tracker;
+        this.sink = sink;
+        this.captured = new BoundedQueue<>(capacity, capturePolicy, Pipeline::release);
+        this.detected = new BoundedQueue<>(capacity, detectPolicy, Pipeline::release);
+        this.tracked = new BoundedQueue<>(capacity, trackPolicy, Pipeline::release);
+    }
+
+    /**
+     * Pipeline for a live source: the oldest frames are dropped so the
+     * output stays close to real time.
+     */
+    public Pipeline(FrameSource source, Detectors detectors, Tracker tracker, FrameSink sink) {
+        this(source, detectors, tracker, sink, 4, Backpressure.DROP_OLDEST, Backpressure.DROP_OLDEST,
+                Backpressure.DROP_OLDEST);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        threads.clear();
+        threads.add(new Thread(this::capture, "pipeline-capture"));
+        threads.add(new Thread(this::detect, "pipeline-detect"));
+        threads.add(new Thread(this::track, "pipeline-track"));
+        threads.add(new Thread(this::render, "pipeline-render"));
+        for (Thread thread : threads) {
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stop every stage, the frames still queued are lost.
+     */
+    public synchronized void stop() {
+        running = false;
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Wait for the end of the stream to go through every stage.
+     */
+    public void awaitTermination() throws InterruptedException {
+        for (Thread thread : new ArrayList<>(threads)) {
+            thread.join();
+        }
+    }
+
+    public long getCaptureDropped() {
+        return captured.getDropped();
+    }
+
+    public long getDetectDropped() {
+        return detected.getDropped();
+    }
+
+    public long getTrackDropped() {
+        return tracked.getDropped();
+    }
+
+    private void capture() {
+        try {
+            long index = 0;
+            while (running) {
+                Mat image = new Mat();
+                if (!source.read(image) || image.empty()) {
+                    image.release();
+                    break;
+                }
+                captured.put(new Frame(index++, image));
+            }
+            captured.putBlocking(END);
+        } catch (InterruptedException e) {
+            // stopped
+        }
+    }
+
+    private void detect() {
+        try {
+            Frame frame;
+            while ((frame = captured.take()) != END) {
+                Metrics metrics = tracker.getMetrics();
+                long t = metrics.start();
+                frame.detections = new DetectionBatch();
+                detectors.detect(frame.image, frame.detections);
+                metrics.lap(Metrics.Stage.DETECT, t);
+                detected.put(frame);
+            }
+            detected.putBlocking(END);
+        } catch (InterruptedException e) {
+            // stopped
+        }
+    }
+
+    private void track() {
+        try {
+            Frame frame;
+            while ((frame = detected.take()) != END) {
+                // an empty batch still ages the tracks, which expire after
+                // maxFramesToSkip frames without detection
+                tracker.Update(frame.detections);
+                frame.tracks = snapshot();
+                tracked.put(frame);
+            }
+            tracked.putBlocking(END);
+        } catch (InterruptedException e) {
+            // stopped
+        }
+    }
+
+    private void render() {
+        try {
+            Frame frame;
+            while ((frame = tracked.take()) != END) {
+                Metrics metrics = tracker.getMetrics();
+                long t = metrics.start();
+                for (TrackTrace track : frame.tracks) {
+                    renderer.drawTrace(frame.image, track.trackId, track.trace);
+                }
+                metrics.lap(Metrics.Stage.RENDER, t);
+                try {
+                    sink.accept(frame);
+                } catch (RuntimeException e) {
+                    System.err.println("Exception in frame sink: " + e);
+                }
+            }
+        } catch (InterruptedException e) {
+            // stopped
+        }
+    }
+
+    private List<TrackTrace> snapshot() {
+        List<TrackTrace> tracks = new ArrayList<>(tracker.getTracks().size());
+        for (Track track : tracker.getTracks()) {
+            tracks.add(new TrackTrace(track.getTrack_id(), track.getTrace().copy()));
+        }
+        return tracks;
+    }
+
+    private static void release(Frame frame) {
+        if (frame.image != null) {
+            frame.image.release();
+        }
+    }
+
+    /**
+     * Run the pipeline on a video file without any display and print the
+     * number of tracks of every frame.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: Pipeline <video file>");
+            return;
+        }
+        // load the native OpenCV library
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        VideoCapture capture = new VideoCapture();
+        if (!capture.open(args[0])) {
+            System.err.println("Impossible to open " + args[0]);
+            return;
+        }
+        FrameSink sink = frame -> {
+            System.out.println("frame " + frame.getIndex() + ": " + frame.getTracks().size() + " tracks");
+            frame.getImage().release();
+        };
+        // a file can wait, nothing is dropped
+        try (Detectors detectors = new Detectors()) {
+            Pipeline pipeline = new Pipeline(capture::read, detectors, new Tracker(200, 30, 300, 100),
+                    sink, 4, Backpressure.BLOCK, Backpressure.BLOCK, Backpressure.BLOCK);
+            pipeline.start();
+            pipeline.awaitTermination();
+        }
+        capture.release();
+    }
+}
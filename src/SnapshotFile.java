@@ -0,0 +1,236 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Memory mapped file keeping the last {@link TrackerSnapshot} of a
+ * tracker, to restart it where it stopped.
+ * <p>
+ * The file holds a header (magic, layout version, slot size) and two
+ * slots A and B written in turn, so the previous snapshot stays whole
+ * while the next one is written. A slot holds its sequence number, the
+ * length and the CRC32 of the snapshot, then the encoded snapshot. The
+ * snapshot is forced to disk before the sequence number is set, a slot
+ * torn by a crash fails its CRC and the other slot is read instead.
+ * <p>
+ * When a snapshot does not fit in a slot, the file is written again with
+ * larger slots next to the old one and moved over it atomically.
+ * Instances are thread safe.
+ */
+public class SnapshotFile implements AutoCloseable {
+
+    private static final int MAGIC = 0x54534e50; // "TSNP"
+    private static final int LAYOUT_VERSION = 1;
+    private static final int HEADER = 16;        // magic, layout version, slot size
+    private static final int SLOT_HEADER = 16;   // sequence, length, crc
+    private static final int MAX_SLOT_SIZE = (Integer.MAX_VALUE - HEADER) / 2;
+
+    private final Path path;
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private MappedByteBuffer map;
+    private int slotSize;
+    private long sequence;  // sequence of the last snapshot written
+
+    /**
+     * Open the file, creating it when missing or not a snapshot file.
+     *
+     * @param slotSize bytes of each slot at creation, grown when needed
+     */
+    public SnapshotFile(Path path, int slotSize) throws IOException {
+        this.path = path;
+        this.slotSize = Math.max(SLOT_HEADER, Math.min(slotSize, MAX_SLOT_SIZE));
+        map(path);
+        sequence = Math.max(slotSequence(0), slotSequence(1));
+    }
+
+    /**
+     * @return sequence number of the last snapshot written, 0 when none
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Write the snapshot in the slot of the older one.
+     */
+    public synchronized void write(TrackerSnapshot snapshot) throws IOException {
+        int length = snapshot.byteSize();
+        if (SLOT_HEADER + length > slotSize) {
+            grow(snapshot, length);
+            return;
+        }
+        writeSlot((int) ((sequence + 1) & 1), snapshot, length, sequence + 1);
+        sequence++;
+    }
+
+    /**
+     * @return the newest whole snapshot of the file, null when none
+     */
+    public synchronized TrackerSnapshot read() {
+        int first = slotSequence(0) >= slotSequence(1) ? 0 : 1;
+        TrackerSnapshot snapshot = readSlot(first);
+        return snapshot != null ? snapshot : readSlot(1 - first);
+    }
+
+    /**
+     * @return the newest whole snapshot of the file, null when the file
+     * does not exist or holds none
+     */
+    public static TrackerSnapshot read(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (slotSize(channel) < 0) {
+                return null;
+            }
+        }
+        try (SnapshotFile file = new SnapshotFile(path, SLOT_HEADER)) {
+            return file.read();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        map = null;
+        channel.close();
+    }
+
+    /**
+     * Map the file, writing a fresh header and empty slots when it holds
+     * none of this layout.
+     */
+    private void map(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        int size = slotSize(channel);
+        boolean valid = size >= 0;
+        if (valid) {
+            slotSize = size;
+        }
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + 2L * slotSize);
+        if (!valid) {
+            for (int k = 0; k < 2; k++) {
+                map.putLong(slotOffset(k), 0);
+                map.putInt(slotOffset(k) + 8, 0);
+            }
+            map.putInt(0, MAGIC).putInt(4, LAYOUT_VERSION).putInt(8, slotSize).putInt(12, 0);
+            map.force();
+        }
+    }
+
+    /**
+     * @return slot size of the file, -1 when it is not a snapshot file of
+     * this layout
+     */
+    private static int slotSize(FileChannel channel) throws IOException {
+        if (channel.size() < HEADER) {
+            return -1;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        channel.read(header, 0);
+        int size = header.getInt(8);
+        boolean valid = header.getInt(0) == MAGIC && header.getInt(4) == LAYOUT_VERSION
+                && size >= SLOT_HEADER && size <= MAX_SLOT_SIZE && channel.size() >= HEADER + 2L * size;
+        return valid ? size : -1;
+    }
+
+    /**
+     * Write the file again with slots large enough for the snapshot, and
+     * replace the old file with it. The snapshot goes to the slot of its
+     * sequence number as in {@link #write}, the previous one is copied in
+     * the other slot, so a torn write still finds a whole snapshot.
+     */
+    private void grow(TrackerSnapshot snapshot, int length) throws IOException {
+        long needed = (long) SLOT_HEADER + length;
+        if (needed > MAX_SLOT_SIZE) {
+            throw new IOException("Snapshot too large: " + length + " bytes");
+        }
+        int size = slotSize;
+        while (size < needed) {
+            size = (int) Math.min(MAX_SLOT_SIZE, 2L * size);
+        }
+        int previous = (int) (sequence & 1);
+        byte[] copy = new byte[slotSize];
+        slot(previous).get(copy);
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.deleteIfExists(tmp);
+        close();
+        slotSize = size;
+        map(tmp);
+        slot(previous).put(copy);
+        writeSlot(1 - previous, snapshot, length, sequence + 1);
+        close();
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        map(path);
+        sequence++;
+    }
+
+    private void writeSlot(int slot, TrackerSnapshot snapshot, int length, long seq) {
+        int offset = slotOffset(slot);
+        map.putLong(offset, 0);  // invalid until whole
+        ByteBuffer payload = payload(offset, length);
+        snapshot.write(payload);
+        payload.flip();
+        crc.reset();
+        crc.update(payload);
+        map.putInt(offset + 8, length);
+        map.putInt(offset + 12, (int) crc.getValue());
+        map.force();
+        map.putLong(offset, seq);
+        map.force();
+    }
+
+    private TrackerSnapshot readSlot(int slot) {
+        int offset = slotOffset(slot);
+        long seq = map.getLong(offset);
+        int length = map.getInt(offset + 8);
+        if (seq <= 0 || length <= 0 || length > slotSize - SLOT_HEADER) {
+            return null;
+        }
+        ByteBuffer payload = payload(offset, length);
+        crc.reset();
+        crc.update(payload);
+        if ((int) crc.getValue() != map.getInt(offset + 12)) {
+            System.err.println("Corrupted snapshot " + seq + " in " + path);
+            return null;
+        }
+        payload.rewind();
+        try {
+            return TrackerSnapshot.read(payload);
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            System.err.println("Unreadable snapshot " + seq + " in " + path + ": " + e);
+            return null;
+        }
+    }
+
+    private long slotSequence(int slot) {
+        return map.getLong(slotOffset(slot));
+    }
+
+    private ByteBuffer payload(int offset, int length) {
+        ByteBuffer payload = map.duplicate();
+        payload.position(offset + SLOT_HEADER);
+        payload.limit(offset + SLOT_HEADER + length);
+        return payload.slice();
+    }
+
+    private ByteBuffer slot(int slot) {
+        ByteBuffer bytes = map.duplicate();
+        bytes.position(slotOffset(slot));
+        bytes.limit(slotOffset(slot) + slotSize);
+        return bytes.slice();
+    }
+
+    private int slotOffset(int slot) {
+        return HEADER + slot * slotSize;
+    }
+}
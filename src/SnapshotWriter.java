@@ -0,0 +1,101 @@
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes snapshots of a tracker to a {@link SnapshotFile} on its own
+ * thread. {@link #offer(Tracker)} is called after the updates, on the
+ * thread running them; every interval frames it copies the state of the
+ * tracker, which takes a few array copies, and hands the copy to the
+ * writing thread. While a snapshot is being written only the newest
+ * waiting one is kept, so the updates never wait for the disk.
+ */
+public class SnapshotWriter implements AutoCloseable {
+
+    private static final TrackerSnapshot END = new TrackerSnapshot(-1, 0, 1, new TrackStore(1), new TraceBuffer[0]);
+
+    private final SnapshotFile file;
+    private final long interval;
+    private final BoundedQueue<TrackerSnapshot> queue;
+    private final AtomicLong written = new AtomicLong();
+    private final Thread thread;
+    private long lastFrame = Long.MIN_VALUE;
+
+    /**
+     * @param interval number of frames between two snapshots
+     */
+    public SnapshotWriter(SnapshotFile file, long interval) {
+        this.file = file;
+        this.interval = Math.max(1, interval);
+        this.queue = new BoundedQueue<>(1, Backpressure.DROP_OLDEST, null);
+        this.thread = new Thread(this::write, "snapshot-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Snapshot the tracker when interval frames went by since the last
+     * snapshot.
+     *
+     * @return whether a snapshot was taken
+     */
+    public boolean offer(Tracker tracker) {
+        long frame = tracker.getFrame();
+        if (lastFrame != Long.MIN_VALUE && frame - lastFrame < interval) {
+            return false;
+        }
+        lastFrame = frame;
+        try {
+            queue.put(tracker.snapshot());
+        } catch (InterruptedException e) {
+            // never happens with DROP_OLDEST, keep the status for the caller
+            Thread.currentThread().interrupt();
+        }
+        return true;
+    }
+
+    /**
+     * @return number of snapshots written
+     */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * @return number of snapshots replaced by a newer one before being written
+     */
+    public long getDropped() {
+        return queue.getDropped();
+    }
+
+    private void write() {
+        try {
+            TrackerSnapshot snapshot;
+            while ((snapshot = queue.take()) != END) {
+                try {
+                    file.write(snapshot);
+                    written.incrementAndGet();
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Exception in writing the tracker snapshot: " + e);
+                }
+            }
+        } catch (InterruptedException e) {
+            // closed
+        }
+    }
+
+    /**
+     * Write the snapshot waiting, if any, and stop the writing thread. The
+     * file stays open.
+     */
+    @Override
+    public void close() {
+        try {
+            queue.putBlocking(END);
+            thread.join();
+        } catch (InterruptedException e) {
+            System.err.println("Interrupted while stopping the snapshot writer: " + e);
+            thread.interrupt();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
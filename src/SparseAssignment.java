@@ -0,0 +1,315 @@
+import java.util.Arrays;
+
+/**
+ * A shortest augmenting path (Jonker-Volgenant) solver for the gated
+ * assignment problem given as a {@link SparseCostMatrix}. Only the
+ * entries of the sparse matrix may be assigned; a worker that cannot be
+ * assigned to any of its jobs is left unassigned.
+ * <p>
+ *
+ * Every worker i gets a private dummy job of cost BIG, which turns the
+ * problem into a rectangular assignment where every worker is matched:
+ * BIG is the cost of leaving a worker unassigned. With a BIG larger than
+ * the cost of any full assignment ({@link #prohibitiveCost}, the default)
+ * the solution assigns as many workers as possible and, among those
+ * assignments, has the minimum total cost. This is the matching the dense
+ * {@link HungarianAlgorithm} returns when the pairs outside the gate are
+ * given a prohibitive cost, with the same total cost (ties may be broken
+ * differently). Proving that a worker cannot be assigned then takes a
+ * search of every worker and job connected to it, so when the jobs are
+ * fewer than the workers, e.g. missed detections, each worker left out
+ * scans its whole cluster. A BIG of the order of the largest gated cost,
+ * e.g. the gate threshold, instead minimizes the total cost plus BIG per
+ * unassigned worker: a search stops at distance BIG, so it only visits
+ * the neighbourhood of its worker.
+ * <p>
+ *
+ * Each unassigned worker is first matched to its cheapest free job when
+ * possible, the remaining ones grow a Dijkstra search on reduced costs
+ * from the worker until a free job is reached. A search only visits the
+ * workers and jobs connected to its root through the gate, and only the
+ * visited entries are reset afterwards, so in sparse scenes a frame runs
+ * in roughly linear time. Internal buffers are kept between calls.
+ */
+public class SparseAssignment {
+    private int rows, cols, dim;
+    private double big;
+
+    private double[] labelByJob; // v, the dual variables of the jobs
+    private int[] matchJobByWorker, matchWorkerByJob;
+    private double[] matchCostByWorker;
+
+    // Dijkstra search
+    private double[] distByJob;
+    private int[] parentWorkerByJob;
+    private double[] parentCostByJob;
+    private boolean[] scannedJobs;
+    private int[] touchedJobs; // jobs whose distance was set in the search
+    private int touchedCount;
+    private int[] heap, heapPositionByJob;
+    private int heapSize;
+    private double bound; // distance of the closest free job reached by the search
+
+    /**
+     * Execute the algorithm.
+     *
+     * @param costs
+     *          the gated costs, where an entry (i, j) holds the cost of
+     *          assigning worker i to job j.
+     * @param assignment
+     *          array of at least costs.getRows() entries receiving the job
+     *          of each worker, -1 when the worker is unassigned.
+     * @return the given assignment array.
+     */
+    public int[] execute(SparseCostMatrix costs, int[] assignment) {
+        return execute(costs, assignment, prohibitiveCost(costs));
+    }
+
+    /**
+     * Execute the algorithm with the given cost of leaving a worker
+     * unassigned. Solving independent parts of a problem with the BIG of
+     * the whole problem gives exactly the assignment of the whole problem.
+     *
+     * @param big
+     *          the cost of leaving a worker unassigned, finite; at least
+     *          {@link #prohibitiveCost(SparseCostMatrix)} of the costs to
+     *          assign as many workers as possible.
+     */
+    public int[] execute(SparseCostMatrix costs, int[] assignment, double big) {
+        this.big = big;
+        initialize(costs);
+        greedyMatch(costs);
+        for (int w = 0; w < rows; w++) {
+            if (matchJobByWorker[w] == -1) {
+                augment(costs, w);
+            }
+        }
+        for (int w = 0; w < rows; w++) {
+            int j = matchJobByWorker[w];
+            assignment[w] = j < cols ? j : -1;
+        }
+        return assignment;
+    }
+
+    /**
+     * The cost BIG of leaving a worker unassigned, chosen so that one more
+     * assigned worker always beats any change in the cost of the others.
+     */
+    public static double prohibitiveCost(SparseCostMatrix costs) {
+        double min = 0, max = 0;
+        for (int k = 0; k < costs.size(); k++) {
+            min = Math.min(min, costs.cost(k));
+            max = Math.max(max, costs.cost(k));
+        }
+        return (Math.min(costs.getRows(), costs.getCols()) + 1) * (max - min + 1);
+    }
+
+    /**
+     * Size the buffers for the problem, reset the matching and the labels.
+     */
+    protected void initialize(SparseCostMatrix costs) {
+        rows = costs.getRows();
+        cols = costs.getCols();
+        dim = cols + rows; // jobs followed by one dummy job per worker
+
+        if (labelByJob == null || labelByJob.length < dim) {
+            int capacity = Math.max(dim, labelByJob == null ? 0 : 2 * labelByJob.length);
+            labelByJob = new double[capacity];
+            matchWorkerByJob = new int[capacity];
+            distByJob = new double[capacity];
+            parentWorkerByJob = new int[capacity];
+            parentCostByJob = new double[capacity];
+            scannedJobs = new boolean[capacity];
+            touchedJobs = new int[capacity];
+            heap = new int[capacity];
+            heapPositionByJob = new int[capacity];
+            Arrays.fill(distByJob, Double.POSITIVE_INFINITY);
+            Arrays.fill(heapPositionByJob, -1);
+        }
+        if (matchJobByWorker == null || matchJobByWorker.length < rows) {
+            int capacity = Math.max(rows, matchJobByWorker == null ? 0 : 2 * matchJobByWorker.length);
+            matchJobByWorker = new int[capacity];
+            matchCostByWorker = new double[capacity];
+        }
+        Arrays.fill(labelByJob, 0, dim, 0);
+        Arrays.fill(matchWorkerByJob, 0, dim, -1);
+        Arrays.fill(matchJobByWorker, 0, rows, -1);
+    }
+
+    /**
+     * Match every worker whose cheapest job is still free to that job. With
+     * zero job labels this keeps the labeling feasible: the implicit label
+     * of a matched worker is its minimum cost.
+     */
+    protected void greedyMatch(SparseCostMatrix costs) {
+        for (int w = 0; w < rows; w++) {
+            int bestJob = cols + w;
+            double bestCost = big;
+            for (int k = costs.start(w); k < costs.end(w); k++) {
+                if (costs.cost(k) < bestCost) {
+                    bestCost = costs.cost(k);
+                    bestJob = costs.col(k);
+                }
+            }
+            if (matchWorkerByJob[bestJob] == -1) {
+                match(w, bestJob, bestCost);
+            }
+        }
+    }
+
+    /**
+     * Find a shortest augmenting path from the free worker root on reduced
+     * costs c(i, j) - u(i) - v(j), where u(i) of a matched worker is implied
+     * by its matched edge being tight and the root starts at zero, then
+     * update the job labels to keep the labeling feasible and flip the path.
+     */
+    protected void augment(SparseCostMatrix costs, int root) {
+        touchedCount = 0;
+        heapSize = 0;
+        bound = Double.POSITIVE_INFINITY;
+
+        relaxWorker(costs, root, 0);
+        int sink = -1;
+        double sinkDist = 0;
+        while (heapSize > 0) {
+            int j = heapPop();
+            scannedJobs[j] = true;
+            if (matchWorkerByJob[j] == -1) {
+                sink = j;
+                sinkDist = distByJob[j];
+                break;
+            }
+            int w = matchWorkerByJob[j];
+            double labelByWorker = matchCostByWorker[w] - labelByJob[matchJobByWorker[w]];
+            relaxWorker(costs, w, distByJob[j] - labelByWorker);
+        }
+
+        // Update the labels of the scanned jobs
+        for (int t = 0; t < touchedCount; t++) {
+            int j = touchedJobs[t];
+            if (scannedJobs[j]) {
+                labelByJob[j] += distByJob[j] - sinkDist;
+            }
+        }
+
+        // Flip the augmenting path
+        int j = sink;
+        while (true) {
+            int w = parentWorkerByJob[j];
+            int next = matchJobByWorker[w];
+            match(w, j, parentCostByJob[j]);
+            if (w == root) {
+                break;
+            }
+            j = next;
+        }
+
+        // Reset the search state of the visited jobs only
+        for (int t = 0; t < touchedCount; t++) {
+            int k = touchedJobs[t];
+            distByJob[k] = Double.POSITIVE_INFINITY;
+            scannedJobs[k] = false;
+            heapPositionByJob[k] = -1;
+        }
+    }
+
+    /**
+     * Relax every job of worker w, offset being the distance to w minus
+     * the label of w.
+     */
+    private void relaxWorker(SparseCostMatrix costs, int w, double offset) {
+        for (int k = costs.start(w); k < costs.end(w); k++) {
+            relax(costs.col(k), w, costs.cost(k), offset);
+        }
+        relax(cols + w, w, big, offset);
+    }
+
+    /**
+     * Lower the distance of job j through worker w. A job no closer than
+     * the closest free job reached, at worst the dummy job of the root, is
+     * never on the shortest path and is left out of the heap.
+     */
+    private void relax(int j, int w, double cost, double offset) {
+        if (scannedJobs[j]) {
+            return;
+        }
+        double dist = offset + cost - labelByJob[j];
+        if (dist < distByJob[j] && dist < bound) {
+            if (matchWorkerByJob[j] == -1) {
+                bound = dist;
+            }
+            if (distByJob[j] == Double.POSITIVE_INFINITY) {
+                touchedJobs[touchedCount++] = j;
+            }
+            distByJob[j] = dist;
+            parentWorkerByJob[j] = w;
+            parentCostByJob[j] = cost;
+            if (heapPositionByJob[j] == -1) {
+                heapPositionByJob[j] = heapSize;
+                heap[heapSize++] = j;
+            }
+            siftUp(heapPositionByJob[j]);
+        }
+    }
+
+    /**
+     * Helper method to record a matching between worker w and job j.
+     */
+    protected void match(int w, int j, double cost) {
+        matchJobByWorker[w] = j;
+        matchWorkerByJob[j] = w;
+        matchCostByWorker[w] = cost;
+    }
+
+    private int heapPop() {
+        int top = heap[0];
+        heapSize--;
+        if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapPositionByJob[heap[0]] = 0;
+            siftDown(0);
+        }
+        heapPositionByJob[top] = -1;
+        return top;
+    }
+
+    private void siftUp(int position) {
+        int j = heap[position];
+        double dist = distByJob[j];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            int p = heap[parent];
+            if (distByJob[p] <= dist) {
+                break;
+            }
+            heap[position] = p;
+            heapPositionByJob[p] = position;
+            position = parent;
+        }
+        heap[position] = j;
+        heapPositionByJob[j] = position;
+    }
+
+    private void siftDown(int position) {
+        int j = heap[position];
+        double dist = distByJob[j];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && distByJob[heap[child + 1]] < distByJob[heap[child]]) {
+                child++;
+            }
+            int c = heap[child];
+            if (distByJob[c] >= dist) {
+                break;
+            }
+            heap[position] = c;
+            heapPositionByJob[c] = position;
+            position = child;
+        }
+        heap[position] = j;
+        heapPositionByJob[j] = position;
+    }
+}
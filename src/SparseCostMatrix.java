@@ -0,0 +1,110 @@
+import java.util.Arrays;
+
+/**
+ * A sparse cost matrix in compressed row storage for the gated
+ * assignment problem. Only the pairs (row, col) that passed the gate
+ * are stored, the others are treated as forbidden assignments.
+ * <p>
+ *
+ * Entries must be added row by row, in non decreasing row order. The
+ * matrix is meant to be reset and filled again on every frame, the
+ * internal arrays only grow and are reused across frames.
+ */
+public class SparseCostMatrix {
+    private int rows, cols;
+    private int size;
+    private int filledRows; // number of rows whose start offset is known
+    private int[] rowStart = new int[16];
+    private int[] colIndex = new int[64];
+    private double[] cost = new double[64];
+
+    /**
+     * Clear the matrix and set its dimensions.
+     *
+     * @param rows
+     *          the number of workers (tracks)
+     * @param cols
+     *          the number of jobs (detections)
+     */
+    public void reset(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.size = 0;
+        this.filledRows = 0;
+        if (rowStart.length < rows + 1) {
+            rowStart = new int[Math.max(rows + 1, 2 * rowStart.length)];
+        }
+    }
+
+    /**
+     * Add the cost of assigning worker row to job col. Rows must be added
+     * in non decreasing order.
+     */
+    public void add(int row, int col, double cost) {
+        if (row < filledRows - 1 || row >= rows) {
+            throw new IllegalArgumentException("Row out of order: " + row);
+        }
+        if (col < 0 || col >= cols) {
+            throw new IllegalArgumentException("Column out of range: " + col);
+        }
+        if (Double.isInfinite(cost)) {
+            throw new IllegalArgumentException("Infinite cost");
+        }
+        if (Double.isNaN(cost)) {
+            throw new IllegalArgumentException("NaN cost");
+        }
+        while (filledRows <= row) {
+            rowStart[filledRows++] = size;
+        }
+        if (size == colIndex.length) {
+            colIndex = Arrays.copyOf(colIndex, 2 * size);
+            this.cost = Arrays.copyOf(this.cost, 2 * size);
+        }
+        colIndex[size] = col;
+        this.cost[size] = cost;
+        size++;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * @return the number of stored entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the offset of the first entry of the row.
+     */
+    public int start(int row) {
+        return row < filledRows ? rowStart[row] : size;
+    }
+
+    /**
+     * @return the offset after the last entry of the row.
+     */
+    public int end(int row) {
+        return row + 1 < filledRows ? rowStart[row + 1] : size;
+    }
+
+    /**
+     * @return the column of the entry at the given offset.
+     */
+    public int col(int offset) {
+        return colIndex[offset];
+    }
+
+    /**
+     * @return the cost of the entry at the given offset.
+     */
+    public double cost(int offset) {
+        return cost[offset];
+    }
+}
@@ -0,0 +1,141 @@
+import java.util.Arrays;
+
+/**
+ SpatialGrid class buckets a set of points in a uniform grid so the
+ points around a position can be found without looking at all of them.
+ The grid covers the bounding box of the points and is rebuilt every
+ frame with a counting sort, the items of a cell are contiguous in one
+ array. All buffers are reused from one build to the next.
+ Attributes: None
+ */
+public class SpatialGrid {
+
+    private double minX, minY;
+    private double cellSize;
+    private int gridCols, gridRows;
+
+    private int[] cellStart = new int[16];  // first item of each cell, one extra for the end
+    private int[] cellOfItem = new int[16];
+    private int[] items = new int[16];      // item indexes sorted by cell
+
+    private int[] found = new int[16];      // result of the last query
+
+    /**
+     * Bucket the points (x[i], y[i]) for i < count.
+     *
+     * @param x x coordinates of the points
+     * @param y y coordinates of the points
+     * @param count number of points
+     * @param cellSize side of a cell, usually the search radius; it is
+     *                 enlarged when needed to keep the number of cells
+     *                 proportional to the number of points
+     */
+    public void build(double[] x, double[] y, int count, double cellSize) {
+        double maxX, maxY;
+        if(count == 0) {
+            minX = minY = maxX = maxY = 0;
+        } else {
+            minX = maxX = x[0];
+            minY = maxY = y[0];
+            for(int i = 1; i < count; i++) {
+                minX = Math.min(minX, x[i]);
+                maxX = Math.max(maxX, x[i]);
+                minY = Math.min(minY, y[i]);
+                maxY = Math.max(maxY, y[i]);
+            }
+        }
+
+        // Keep at most about 4 cells per point
+        long maxCells = 4L * count + 16;
+        this.cellSize = Math.max(cellSize, 1e-9);
+        while((long) cols(maxX) * rows(maxY) > maxCells) {
+            this.cellSize *= 2;
+        }
+        gridCols = cols(maxX);
+        gridRows = rows(maxY);
+        int cells = gridCols * gridRows;
+
+        if(cellStart.length < cells + 1) {
+            cellStart = new int[Math.max(cells + 1, 2 * cellStart.length)];
+        }
+        if(items.length < count) {
+            int capacity = Math.max(count, 2 * items.length);
+            items = new int[capacity];
+            cellOfItem = new int[capacity];
+        }
+
+        // Counting sort of the points by cell
+        Arrays.fill(cellStart, 0, cells + 1, 0);
+        for(int i = 0; i < count; i++) {
+            int c = cellRow(y[i]) * gridCols + cellCol(x[i]);
+            cellOfItem[i] = c;
+            cellStart[c + 1]++;
+        }
+        for(int c = 0; c < cells; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        for(int i = 0; i < count; i++) {
+            items[cellStart[cellOfItem[i]]++] = i;
+        }
+        // cellStart[c] now holds the end of cell c, shift it back
+        for(int c = cells; c > 0; c--) {
+            cellStart[c] = cellStart[c - 1];
+        }
+        cellStart[0] = 0;
+    }
+
+    /**
+     * Collect the points of every cell overlapping the square of side
+     * 2 * radius centered on (x, y). The candidates may be farther than
+     * radius, the caller does the exact check.
+     *
+     * @return number of candidates, read them with {@link #found(int)}
+     */
+    public int query(double x, double y, double radius) {
+        int count = 0;
+        if(gridCols == 0) {
+            return count;
+        }
+        int c0 = Math.max(0, cellCol(x - radius));
+        int c1 = Math.min(gridCols - 1, cellCol(x + radius));
+        int r0 = Math.max(0, cellRow(y - radius));
+        int r1 = Math.min(gridRows - 1, cellRow(y + radius));
+        for(int r = r0; r <= r1; r++) {
+            int start = cellStart[r * gridCols + c0];
+            int end = cellStart[r * gridCols + c1 + 1];
+            // the cells of a grid row are contiguous
+            if(count + end - start > found.length) {
+                found = Arrays.copyOf(found, Math.max(count + end - start, 2 * found.length));
+            }
+            for(int k = start; k < end; k++) {
+                found[count++] = items[k];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the k-th candidate of the last query
+     */
+    public int found(int k) {
+        return found[k];
+    }
+
+    private int cols(double maxX) {
+        return (int) ((maxX - minX) / cellSize) + 1;
+    }
+
+    private int rows(double maxY) {
+        return (int) ((maxY - minY) / cellSize) + 1;
+    }
+
+    private int cellCol(double x) {
+        double c = Math.floor((x - minX) / cellSize);
+        return (int) Math.max(-1, Math.min(gridCols, c));
+    }
+
+    private int cellRow(double y) {
+        double r = Math.floor((y - minY) / cellSize);
+        return (int) Math.max(-1, Math.min(gridRows, r));
+    }
+}
@@ -0,0 +1,156 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed capacity ring buffer of the trace of a track, with the
+ * coordinates in primitive arrays. Appending is O(1) and, once the buffer
+ * is full, overwrites the oldest point. Points are read in place with
+ * {@link #getX(int)} and {@link #getY(int)}, index 0 being the oldest.
+ * <p>
+ * With a decimation interval, a point is only kept when it is at least
+ * the interval after the previous kept point; in between, the newest
+ * point is replaced. The trace then always ends at the latest position
+ * while spanning capacity times the interval, in the unit of the times
+ * given to {@link #add(double, double, long)} (e.g. frames).
+ */
+public class TraceBuffer {
+
+    private final double[] xs;
+    private final double[] ys;
+    private final long[] times;
+    private long interval;
+    private int head;   // index of the oldest point
+    private int size;
+
+    /**
+     * @param capacity maximum number of points
+     */
+    public TraceBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.xs = new double[capacity];
+        this.ys = new double[capacity];
+        this.times = new long[capacity];
+    }
+
+    /**
+     * @param interval minimum time between two kept points, 0 keeps every point
+     */
+    public void setDecimation(long interval) {
+        this.interval = interval;
+    }
+
+    public long getDecimation() {
+        return interval;
+    }
+
+    /**
+     * Append a point, evicting the oldest one when the buffer is full.
+     *
+     * @param time time of the point, non decreasing
+     */
+    public void add(double x, double y, long time) {
+        int capacity = xs.length;
+        int index;
+        if (interval > 0 && size >= 2 && times[slot(size - 1)] - times[slot(size - 2)] < interval) {
+            // the newest point is too close to the previous kept one, move it
+            index = slot(size - 1);
+        } else if (size < capacity) {
+            index = slot(size++);
+        } else {
+            index = head;
+            head = head + 1 == capacity ? 0 : head + 1;
+        }
+        xs[index] = x;
+        ys[index] = y;
+        times[index] = time;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return xs.length;
+    }
+
+    /**
+     * @param k index of the point, 0 is the oldest
+     */
+    public double getX(int k) {
+        return xs[slot(k)];
+    }
+
+    public double getY(int k) {
+        return ys[slot(k)];
+    }
+
+    public long getTime(int k) {
+        return times[slot(k)];
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * @return a copy holding only the points, oldest first
+     */
+    public TraceBuffer copy() {
+        TraceBuffer copy = new TraceBuffer(Math.max(1, size));
+        copy.interval = interval;
+        int first = Math.min(size, xs.length - head);
+        System.arraycopy(xs, head, copy.xs, 0, first);
+        System.arraycopy(ys, head, copy.ys, 0, first);
+        System.arraycopy(times, head, copy.times, 0, first);
+        System.arraycopy(xs, 0, copy.xs, first, size - first);
+        System.arraycopy(ys, 0, copy.ys, first, size - first);
+        System.arraycopy(times, 0, copy.times, first, size - first);
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * @return number of bytes written by {@link #write(ByteBuffer)}
+     */
+    public int byteSize() {
+        return 8 + 4 + size * (8 + 8 + 8);
+    }
+
+    /**
+     * Write the decimation interval and the points, oldest first, at the
+     * position of the buffer.
+     */
+    public void write(ByteBuffer out) {
+        out.putLong(interval).putInt(size);
+        for (int k = 0; k < size; k++) {
+            int index = slot(k);
+            out.putDouble(xs[index]).putDouble(ys[index]).putLong(times[index]);
+        }
+    }
+
+    /**
+     * Read the points written by {@link #write(ByteBuffer)} into a buffer
+     * of the given capacity, keeping the newest ones when they do not fit.
+     */
+    public static TraceBuffer read(ByteBuffer in, int capacity) {
+        long interval = in.getLong();
+        int size = in.getInt();
+        if (size < 0 || (long) size * 24 > in.remaining()) {
+            throw new IllegalArgumentException("Invalid number of trace points: " + size);
+        }
+        TraceBuffer trace = new TraceBuffer(capacity);
+        for (int k = 0; k < size; k++) {
+            trace.add(in.getDouble(), in.getDouble(), in.getLong());
+        }
+        // the points were decimated already
+        trace.interval = interval;
+        return trace;
+    }
+
+    private int slot(int k) {
+        int index = head + k;
+        return index >= xs.length ? index - xs.length : index;
+    }
+}
@@ -0,0 +1,46 @@
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Draws the trace of the tracks on a frame, one color per track id.
+ * Only depends on OpenCV so it can be used without JavaFX.
+ */
+public class TraceRenderer {
+
+    // Color
+    private static final Scalar[] trackColors = {
+            new Scalar(255, 0, 0),      // blue
+            new Scalar(0, 255, 0),      // green
+            new Scalar(0, 0, 255),      // red
+            new Scalar(255, 255, 0),    // cyan
+            new Scalar(0, 255, 255),    // yellow
+            new Scalar(255, 0, 255),    // magenta
+            new Scalar(255, 127, 255),  // pink
+            new Scalar(127, 0, 255),    // purple
+            new Scalar(127, 0, 127)     // purpleblack
+    };
+
+    // ends of the segment being drawn, reused
+    private final Point from = new Point();
+    private final Point to = new Point();
+
+    /**
+     * Draw the trace line of one track.
+     *
+     * @param frame the frame to draw on
+     * @param trackId identification of the track, gives its color
+     * @param trace trace path of the track
+     */
+    public void drawTrace(Mat frame, int trackId, TraceBuffer trace) {
+        Scalar color = trackColors[trackId % trackColors.length];
+        for(int j = 0; j < trace.size() - 1; j++) {
+            from.x = trace.getX(j);
+            from.y = trace.getY(j);
+            to.x = trace.getX(j + 1);
+            to.y = trace.getY(j + 1);
+            Imgproc.line(frame, from, to, color, 2);
+        }
+    }
+}
@@ -1,65 +1,87 @@
 import org.opencv.core.Point;
 
-import java.util.ArrayList;
-
 /**
- * Track class for every object to be tracked
+ * Track class for every object to be tracked.
+ * A track is a light view on its slot in the {@link TrackStore}
+ * that holds the Kalman state, only the trace lives in the object.
  * Attributes:
  * None
  */
 public class Track {
 
-    private int track_id;  // identification of each track object
-    private KalmanFilter KF;  // KF instance to track this object
-    private Point prediction; // predicted centroids (x,y)
-    private int skippedFrames; // number of frames skipped undetected
-    private ArrayList<Point> trace;  // trace path
-
-    public Track(Point prediction, int track_id) {
-        this.track_id = track_id;
-        this.prediction = prediction;
-        KF = new KalmanFilter();
-        this.skippedFrames = 0;
-        this.trace = new ArrayList<>();
+    private final TrackStore store; // store of the Kalman state
+    private int slot;  // index of this track in the store
+    private final TraceBuffer trace;  // trace path
+
+    /**
+     * @param traceLength maximum number of points of the trace
+     */
+    public Track(TrackStore store, int slot, int traceLength) {
+        this.store = store;
+        this.slot = slot;
+        this.trace = new TraceBuffer(traceLength);
     }
 
+    /**
+     * @return predicted centroid (x,y)
+     */
     public Point getPrediction() {
-        return prediction;
+        return new Point(store.getX(slot), store.getY(slot));
+    }
+
+    public double getX() {
+        return store.getX(slot);
+    }
+
+    public double getY() {
+        return store.getY(slot);
     }
 
-    public void setPrediction(Point prediction) {
-        this.prediction = prediction;
+    public double getVx() {
+        return store.getVx(slot);
+    }
+
+    public double getVy() {
+        return store.getVy(slot);
     }
 
     public void addSkippedFrames() {
-        skippedFrames += 1;
+        store.addSkippedFrames(slot);
     }
 
     public int getSkippedFrames() {
-        return skippedFrames;
+        return store.getSkippedFrames(slot);
     }
 
     public void setSkippedFrames(int skippedFrames) {
-        this.skippedFrames = skippedFrames;
+        store.setSkippedFrames(slot, skippedFrames);
     }
 
-    public KalmanFilter getKF() {
-        return KF;
+    /**
+     * Append the current position to the trace.
+     *
+     * @param time time of the position, e.g. the frame number
+     */
+    public void addPoint(long time) {
+        trace.add(store.getX(slot), store.getY(slot), time);
     }
 
-    public void addPoint(Point p) {
-        trace.add(p);
+    public TraceBuffer getTrace() {
+        return trace;
     }
 
-    public void delPoint(int index) {
-        trace.remove(index);
+    public int getTrack_id() {
+        return store.getId(slot);
     }
 
-    public ArrayList<Point> getTrace() {
-        return trace;
+    int getSlot() {
+        return slot;
     }
 
-    public int getTrack_id() {
-        return track_id;
+    /**
+     * Follow the state of the track moved to another slot of the store.
+     */
+    void setSlot(int slot) {
+        this.slot = slot;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,167 @@
+import java.util.Arrays;
+
+/**
+ * Changes of the tracks of a {@link Tracker} during one update: the
+ * tracks born, the tracks updated with a detection and the tracks
+ * deleted, each with its state at the end of the update (the last state
+ * for a deleted track). A live track missing from the delta coasted on its
+ * prediction: its position moved by its velocity and it skipped one more
+ * frame. The delta never changes once published.
+ * <p>
+ * The changes are kept as structure of arrays, one entry per changed
+ * track, so an update does not allocate per track; {@link #getState(int)}
+ * makes an object of an entry for the listeners that want one.
+ */
+public final class TrackDelta {
+
+    public enum Kind {
+        BORN, UPDATED, DELETED
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+
+    private final long frame;
+    private final long missed;
+    private int size;
+    private byte[] kinds;
+    private int[] trackIds;
+    private double[] xs, ys;
+    private double[] vxs, vys;
+    private int[] skippedFrames;
+    private final int[] counts;
+
+    /**
+     * @param capacity number of changes expected, the arrays grow past it
+     */
+    TrackDelta(long frame, int capacity) {
+        this.frame = frame;
+        this.missed = 0;
+        capacity = Math.max(1, capacity);
+        kinds = new byte[capacity];
+        trackIds = new int[capacity];
+        xs = new double[capacity];
+        ys = new double[capacity];
+        vxs = new double[capacity];
+        vys = new double[capacity];
+        skippedFrames = new int[capacity];
+        counts = new int[KINDS.length];
+    }
+
+    private TrackDelta(TrackDelta changes, long missed) {
+        this.frame = changes.frame;
+        this.missed = missed;
+        this.size = changes.size;
+        this.kinds = changes.kinds;
+        this.trackIds = changes.trackIds;
+        this.xs = changes.xs;
+        this.ys = changes.ys;
+        this.vxs = changes.vxs;
+        this.vys = changes.vys;
+        this.skippedFrames = changes.skippedFrames;
+        this.counts = changes.counts;
+    }
+
+    /**
+     * @return number of the update of the tracker, starting at 1
+     */
+    public long getFrame() {
+        return frame;
+    }
+
+    /**
+     * @return number of changed tracks, the entries of the delta
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of entries of the given kind
+     */
+    public int count(Kind kind) {
+        return counts[kind.ordinal()];
+    }
+
+    public Kind getKind(int k) {
+        return KINDS[kinds[k]];
+    }
+
+    public int getTrackId(int k) {
+        return trackIds[k];
+    }
+
+    public double getX(int k) {
+        return xs[k];
+    }
+
+    public double getY(int k) {
+        return ys[k];
+    }
+
+    public double getVx(int k) {
+        return vxs[k];
+    }
+
+    public double getVy(int k) {
+        return vys[k];
+    }
+
+    public int getSkippedFrames(int k) {
+        return skippedFrames[k];
+    }
+
+    /**
+     * @return a new object holding the state of entry k
+     */
+    public TrackState getState(int k) {
+        return new TrackState(trackIds[k], xs[k], ys[k], vxs[k], vys[k], skippedFrames[k]);
+    }
+
+    /**
+     * @return number of deltas dropped just before this one by an
+     * {@link AsyncTrackListener} that fell behind; when not 0 the listener
+     * missed changes and should rebuild its view from the states it gets
+     */
+    public long getMissed() {
+        return missed;
+    }
+
+    void add(Kind kind, Track track) {
+        if (size == kinds.length) {
+            grow();
+        }
+        kinds[size] = (byte) kind.ordinal();
+        trackIds[size] = track.getTrack_id();
+        xs[size] = track.getX();
+        ys[size] = track.getY();
+        vxs[size] = track.getVx();
+        vys[size] = track.getVy();
+        skippedFrames[size] = track.getSkippedFrames();
+        counts[kind.ordinal()]++;
+        size++;
+    }
+
+    private void grow() {
+        int capacity = 2 * kinds.length;
+        kinds = Arrays.copyOf(kinds, capacity);
+        trackIds = Arrays.copyOf(trackIds, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        vxs = Arrays.copyOf(vxs, capacity);
+        vys = Arrays.copyOf(vys, capacity);
+        skippedFrames = Arrays.copyOf(skippedFrames, capacity);
+    }
+
+    /**
+     * @return the same changes reporting missed deltas before them
+     */
+    TrackDelta withMissed(long missed) {
+        return new TrackDelta(this, missed);
+    }
+
+    @Override
+    public String toString() {
+        return "Frame " + frame + ": born=" + count(Kind.BORN) + " updated=" + count(Kind.UPDATED) + " deleted="
+                + count(Kind.DELETED) + (missed > 0 ? " missed=" + missed : "");
+    }
+}
@@ -0,0 +1,14 @@
+/**
+ * Receives the changes of the tracks of a {@link Tracker}.
+ * <p>
+ * Listeners are called on the thread running {@link Tracker#Update},
+ * which waits for them; a listener doing real work (drawing, storage,
+ * network) should be wrapped in an {@link AsyncTrackListener}.
+ */
+public interface TrackListener {
+
+    /**
+     * Called at the end of every update of the tracker.
+     */
+    void onDelta(TrackDelta delta);
+}
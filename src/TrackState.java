@@ -0,0 +1,49 @@
+/**
+ * Immutable state of a track at the end of a frame, as given by
+ * {@link TrackDelta#getState(int)}.
+ */
+public final class TrackState {
+
+    private final int trackId;
+    private final double x, y;
+    private final double vx, vy;
+    private final int skippedFrames;
+
+    public TrackState(int trackId, double x, double y, double vx, double vy, int skippedFrames) {
+        this.trackId = trackId;
+        this.x = x;
+        this.y = y;
+        this.vx = vx;
+        this.vy = vy;
+        this.skippedFrames = skippedFrames;
+    }
+
+    public int getTrackId() {
+        return trackId;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getVx() {
+        return vx;
+    }
+
+    public double getVy() {
+        return vy;
+    }
+
+    public int getSkippedFrames() {
+        return skippedFrames;
+    }
+
+    @Override
+    public String toString() {
+        return "Track " + trackId + " (" + x + ", " + y + ") v=(" + vx + ", " + vy + ") skipped=" + skippedFrames;
+    }
+}
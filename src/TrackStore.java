@@ -0,0 +1,459 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ TrackStore class keeps the Kalman state of every track in parallel
+ primitive arrays (structure of arrays), one entry per slot.
+ The state u = [x, y, vx, vy], the covariance P, the number of
+ skipped frames and the id of the track in slot i are all found at
+ index i, so a pass over every track walks a few contiguous arrays
+ instead of thousands of small objects.
+ Every product of the constant velocity filter is unrolled by hand, so
+ neither the prediction nor the correction allocates; a
+ {@link KalmanFilter} is a store of a single track. The radius and the
+ class of the last detection assigned to a track are kept along, for the
+ size and class aware costs and gates.
+ Attributes: None
+ */
+public class TrackStore {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int size;
+
+    private int[] ids;  // identification of each track object
+    private int[] skippedFrames; // number of frames skipped undetected
+    private float[] radius; // radius of the last detection, 0 when unknown
+    private int[] classId;  // class of the last classified detection
+
+    // State vector u = [x, y, vx, vy]
+    private double[] x, y, vx, vy;
+
+    // Covariance matrix P, upper triangle only
+    // (pij is the entry at row i, column j, with 0 = x, 1 = y, 2 = vx, 3 = vy)
+    private double[] p00, p01, p02, p03;
+    private double[] p11, p12, p13;
+    private double[] p22, p23;
+    private double[] p33;
+
+    private double q = 1; // process noise, Q = q * I
+    private double r = 1; // observation noise, R = r * I
+
+    public TrackStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public TrackStore(int capacity) {
+        capacity = Math.max(capacity, 1);
+        ids = new int[capacity];
+        skippedFrames = new int[capacity];
+        radius = new float[capacity];
+        classId = new int[capacity];
+        x = new double[capacity];
+        y = new double[capacity];
+        vx = new double[capacity];
+        vy = new double[capacity];
+        p00 = new double[capacity];
+        p01 = new double[capacity];
+        p02 = new double[capacity];
+        p03 = new double[capacity];
+        p11 = new double[capacity];
+        p12 = new double[capacity];
+        p13 = new double[capacity];
+        p22 = new double[capacity];
+        p23 = new double[capacity];
+        p33 = new double[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return a store holding a copy of the tracks of this one
+     */
+    public TrackStore copy() {
+        TrackStore copy = new TrackStore(size);
+        copy.copyFrom(this);
+        return copy;
+    }
+
+    /**
+     * Replace the tracks of this store by a copy of the ones of other.
+     */
+    public void copyFrom(TrackStore other) {
+        if(ids.length < other.size) {
+            grow(other.size);
+        }
+        int n = other.size;
+        size = n;
+        q = other.q;
+        r = other.r;
+        System.arraycopy(other.ids, 0, ids, 0, n);
+        System.arraycopy(other.skippedFrames, 0, skippedFrames, 0, n);
+        System.arraycopy(other.radius, 0, radius, 0, n);
+        System.arraycopy(other.classId, 0, classId, 0, n);
+        System.arraycopy(other.x, 0, x, 0, n);
+        System.arraycopy(other.y, 0, y, 0, n);
+        System.arraycopy(other.vx, 0, vx, 0, n);
+        System.arraycopy(other.vy, 0, vy, 0, n);
+        double[][] from = other.covariance(), to = covariance();
+        for(int k = 0; k < from.length; k++) {
+            System.arraycopy(from[k], 0, to[k], 0, n);
+        }
+    }
+
+    /**
+     * @return number of bytes written by {@link #write(ByteBuffer)}
+     */
+    public int byteSize() {
+        return 2 * 8 + 4 + size * (4 + 4 + 4 + 4 + 4 * 8 + 10 * 8);
+    }
+
+    /**
+     * Write the tracks at the position of the buffer, array by array.
+     */
+    public void write(ByteBuffer out) {
+        int n = size;
+        out.putDouble(q).putDouble(r).putInt(n);
+        for(int i = 0; i < n; i++) {
+            out.putInt(ids[i]);
+        }
+        for(int i = 0; i < n; i++) {
+            out.putInt(skippedFrames[i]);
+        }
+        for(int i = 0; i < n; i++) {
+            out.putFloat(radius[i]);
+        }
+        for(int i = 0; i < n; i++) {
+            out.putInt(classId[i]);
+        }
+        for(double[] a : new double[][]{x, y, vx, vy}) {
+            for(int i = 0; i < n; i++) {
+                out.putDouble(a[i]);
+            }
+        }
+        for(double[] a : covariance()) {
+            for(int i = 0; i < n; i++) {
+                out.putDouble(a[i]);
+            }
+        }
+    }
+
+    /**
+     * Read the tracks written by {@link #write(ByteBuffer)}.
+     */
+    public static TrackStore read(ByteBuffer in) {
+        double q = in.getDouble();
+        double r = in.getDouble();
+        int n = in.getInt();
+        if(n < 0 || (long) n * 4 > in.remaining()) {
+            throw new IllegalArgumentException("Invalid number of tracks: " + n);
+        }
+        TrackStore store = new TrackStore(n);
+        store.size = n;
+        store.q = q;
+        store.r = r;
+        for(int i = 0; i < n; i++) {
+            store.ids[i] = in.getInt();
+        }
+        for(int i = 0; i < n; i++) {
+            store.skippedFrames[i] = in.getInt();
+        }
+        for(int i = 0; i < n; i++) {
+            store.radius[i] = in.getFloat();
+        }
+        for(int i = 0; i < n; i++) {
+            store.classId[i] = in.getInt();
+        }
+        for(double[] a : new double[][]{store.x, store.y, store.vx, store.vy}) {
+            for(int i = 0; i < n; i++) {
+                a[i] = in.getDouble();
+            }
+        }
+        for(double[] a : store.covariance()) {
+            for(int i = 0; i < n; i++) {
+                a[i] = in.getDouble();
+            }
+        }
+        return store;
+    }
+
+    private double[][] covariance() {
+        return new double[][]{p00, p01, p02, p03, p11, p12, p13, p22, p23, p33};
+    }
+
+    /**
+     * Start a new track at the observed position with no velocity.
+     *
+     * @param id identification of the track
+     * @param bx observed x
+     * @param by observed y
+     * @return slot of the new track
+     */
+    public int add(int id, double bx, double by) {
+        return add(id, bx, by, 0, DetectionBatch.NO_CLASS);
+    }
+
+    /**
+     * Start a new track at the observed position with no velocity.
+     *
+     * @param id identification of the track
+     * @param bx observed x
+     * @param by observed y
+     * @param r radius of the detection, 0 when unknown
+     * @param cls class of the detection, {@link DetectionBatch#NO_CLASS} when unknown
+     * @return slot of the new track
+     */
+    public int add(int id, double bx, double by, float r, int cls) {
+        if(size == ids.length) {
+            grow(size * 2);
+        }
+        int i = size++;
+        ids[i] = id;
+        skippedFrames[i] = 0;
+        radius[i] = r;
+        classId[i] = cls;
+        x[i] = bx;
+        y[i] = by;
+        vx[i] = 0;
+        vy[i] = 0;
+        p00[i] = 3; p01[i] = 0; p02[i] = 0; p03[i] = 0;
+        p11[i] = 3; p12[i] = 0; p13[i] = 0;
+        p22[i] = 3; p23[i] = 0;
+        p33[i] = 3;
+        return i;
+    }
+
+    /**
+     * Copy the track of slot from into slot to, used to compact the store
+     * when tracks are removed.
+     */
+    public void move(int from, int to) {
+        ids[to] = ids[from];
+        skippedFrames[to] = skippedFrames[from];
+        radius[to] = radius[from];
+        classId[to] = classId[from];
+        x[to] = x[from];
+        y[to] = y[from];
+        vx[to] = vx[from];
+        vy[to] = vy[from];
+        p00[to] = p00[from]; p01[to] = p01[from]; p02[to] = p02[from]; p03[to] = p03[from];
+        p11[to] = p11[from]; p12[to] = p12[from]; p13[to] = p13[from];
+        p22[to] = p22[from]; p23[to] = p23[from];
+        p33[to] = p33[from];
+    }
+
+    /**
+     * Drop the tracks of the slots from size on.
+     */
+    public void truncate(int size) {
+        if(size < 0 || size > this.size) {
+            throw new IllegalArgumentException("Invalid size " + size + ", store holds " + this.size);
+        }
+        this.size = size;
+    }
+
+    /**
+     * Predict the state and covariance of every track.
+     * <pre>
+     * u'_{k|k-1} = Fu'_{k-1|k-1}
+     * P_{k|k-1} = FP_{k-1|k-1} F.T + Q
+     * where F.T is F transpose and
+     * F = | 1 0 dt 0  |
+     *     | 0 1 0  dt |
+     *     | 0 0 1  0  |
+     *     | 0 0 0  1  |
+     * </pre>
+     * Covariance and state are updated in two separate loops
+     * which only read and write the arrays at the current index,
+     * so the JIT can unroll and vectorize them.
+     *
+     * @param dt time elapsed since the last prediction
+     */
+    public void predictAll(double dt) {
+        final int n = size;
+        final double dt2 = dt * dt;
+        final double q = this.q;
+
+        // Predicted estimate covariance
+        for(int i = 0; i < n; i++) {
+            double a02 = p02[i], a03 = p03[i], a12 = p12[i], a13 = p13[i];
+            double a22 = p22[i], a23 = p23[i], a33 = p33[i];
+            p00[i] += 2 * dt * a02 + dt2 * a22 + q;
+            p01[i] += dt * (a03 + a12) + dt2 * a23;
+            p02[i] = a02 + dt * a22;
+            p03[i] = a03 + dt * a23;
+            p11[i] += 2 * dt * a13 + dt2 * a33 + q;
+            p12[i] = a12 + dt * a23;
+            p13[i] = a13 + dt * a33;
+            p22[i] = a22 + q;
+            p33[i] = a33 + q;
+        }
+
+        // Predicted state estimate
+        for(int i = 0; i < n; i++) {
+            x[i] = Math.round(x[i] + dt * vx[i]);
+            y[i] = Math.round(y[i] + dt * vy[i]);
+        }
+    }
+
+    /**
+     * Correct the state of one track with an observation b.
+     * <pre>
+     * C = AP_{k|k-1} A.T + R
+     * K_{k} = P_{k|k-1} A.T(C.Inv)
+     * u'_{k|k} = u'_{k|k-1} + K_{k}(b_{k} - Au'_{k|k-1})
+     * P_{k|k} = P_{k|k-1} - K_{k}(CK.T)
+     * where A.T is A transpose and C.Inv is C inverse
+     * </pre>
+     * A selects the position in the state, so C is the upper left 2x2
+     * block of P plus R and K only needs the first two columns of P.
+     *
+     * @param i slot of the track
+     * @param bx observed x
+     * @param by observed y
+     */
+    public void correct(int i, double bx, double by) {
+        double a00 = p00[i], a01 = p01[i], a02 = p02[i], a03 = p03[i];
+        double a11 = p11[i], a12 = p12[i], a13 = p13[i];
+
+        // C = APA.T + R and its inverse
+        double c00 = a00 + r;
+        double c11 = a11 + r;
+        double det = c00 * c11 - a01 * a01;
+        double i00 = c11 / det;
+        double i01 = -a01 / det;
+        double i11 = c00 / det;
+
+        // K = PA.T(C.Inv)
+        double k00 = a00 * i00 + a01 * i01, k01 = a00 * i01 + a01 * i11;
+        double k10 = a01 * i00 + a11 * i01, k11 = a01 * i01 + a11 * i11;
+        double k20 = a02 * i00 + a12 * i01, k21 = a02 * i01 + a12 * i11;
+        double k30 = a03 * i00 + a13 * i01, k31 = a03 * i01 + a13 * i11;
+
+        // Innovation b - Au
+        double ex = bx - x[i];
+        double ey = by - y[i];
+
+        x[i] = Math.round(x[i] + k00 * ex + k01 * ey);
+        y[i] = Math.round(y[i] + k10 * ex + k11 * ey);
+        vx[i] += k20 * ex + k21 * ey;
+        vy[i] += k30 * ex + k31 * ey;
+
+        // P - K(AP)
+        p00[i] = a00 - (k00 * a00 + k01 * a01);
+        p01[i] = a01 - (k00 * a01 + k01 * a11);
+        p02[i] = a02 - (k00 * a02 + k01 * a12);
+        p03[i] = a03 - (k00 * a03 + k01 * a13);
+        p11[i] = a11 - (k10 * a01 + k11 * a11);
+        p12[i] = a12 - (k10 * a02 + k11 * a12);
+        p13[i] = a13 - (k10 * a03 + k11 * a13);
+        p22[i] -= k20 * a02 + k21 * a12;
+        p23[i] -= k20 * a03 + k21 * a13;
+        p33[i] -= k30 * a03 + k31 * a13;
+    }
+
+    /**
+     * Keep the shape of the detection assigned to a track, an unknown
+     * radius or class leaves the previous one.
+     */
+    public void setShape(int i, float r, int cls) {
+        if(r > 0) {
+            radius[i] = r;
+        }
+        if(cls != DetectionBatch.NO_CLASS) {
+            classId[i] = cls;
+        }
+    }
+
+    public float getRadius(int i) {
+        return radius[i];
+    }
+
+    public int getClassId(int i) {
+        return classId[i];
+    }
+
+    public int getId(int i) {
+        return ids[i];
+    }
+
+    public int getSkippedFrames(int i) {
+        return skippedFrames[i];
+    }
+
+    public void setSkippedFrames(int i, int skipped) {
+        skippedFrames[i] = skipped;
+    }
+
+    public void addSkippedFrames(int i) {
+        skippedFrames[i] += 1;
+    }
+
+    public double getX(int i) {
+        return x[i];
+    }
+
+    public double getY(int i) {
+        return y[i];
+    }
+
+    public double getVx(int i) {
+        return vx[i];
+    }
+
+    public double getVy(int i) {
+        return vy[i];
+    }
+
+    /**
+     * @return variance of the position x, entry (0, 0) of P
+     */
+    public double getP00(int i) {
+        return p00[i];
+    }
+
+    /**
+     * @return covariance of the positions x and y, entry (0, 1) of P
+     */
+    public double getP01(int i) {
+        return p01[i];
+    }
+
+    /**
+     * @return variance of the position y, entry (1, 1) of P
+     */
+    public double getP11(int i) {
+        return p11[i];
+    }
+
+    /**
+     * @return observation noise r, R = r * I, so the innovation covariance
+     * of a track is the upper left 2x2 block of P plus r * I
+     */
+    public double getObservationNoise() {
+        return r;
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        skippedFrames = Arrays.copyOf(skippedFrames, capacity);
+        radius = Arrays.copyOf(radius, capacity);
+        classId = Arrays.copyOf(classId, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        vx = Arrays.copyOf(vx, capacity);
+        vy = Arrays.copyOf(vy, capacity);
+        p00 = Arrays.copyOf(p00, capacity);
+        p01 = Arrays.copyOf(p01, capacity);
+        p02 = Arrays.copyOf(p02, capacity);
+        p03 = Arrays.copyOf(p03, capacity);
+        p11 = Arrays.copyOf(p11, capacity);
+        p12 = Arrays.copyOf(p12, capacity);
+        p13 = Arrays.copyOf(p13, capacity);
+        p22 = Arrays.copyOf(p22, capacity);
+        p23 = Arrays.copyOf(p23, capacity);
+        p33 = Arrays.copyOf(p33, capacity);
+    }
+}
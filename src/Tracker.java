@@ -1,12 +1,9 @@
-import com.google.common.collect.Lists;
-import com.google.common.primitives.Ints;
-import org.ejml.simple.SimpleMatrix;
 import org.opencv.core.Point;
 
-import java.lang.reflect.Array;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 
 /**
@@ -20,26 +17,198 @@ public class Tracker {
     private int maxFramesToSkip;
     private int maxTraceLength;
     private ArrayList<Track> tracks = new ArrayList<>();
+    private TrackStore store = new TrackStore();
     private int trackIdCount;
+    private long frameCount;  // number of updates, time of the trace points
+    private int traceDecimation;
+    private double dt = 0.005;  // delta time of the Kalman prediction
+
+    private CostFunction costFunction = new EuclideanCost();
+    private Gate gate;
+    private SpatialGrid grid = new SpatialGrid(); // detections by position
+    private double[] detX = new double[0], detY = new double[0];
+    private double[] searchRadius = new double[0]; // gate radius of each track
+    private SparseCostMatrix costs = new SparseCostMatrix(); // gated cost matrix
+    private ComponentAssignment solver = new ComponentAssignment();
+    private int[] assigmentL = new int[0];
+    private final BitSet detectionUsed = new BitSet(); // detections assigned to a track
+    private double unassignedCost;
+    private final DetectionBatch pointBatch = new DetectionBatch(); // input of the Point overload
+
+    private Metrics metrics = Metrics.DISABLED;
+    private int created;  // tracks created by the current update
+
+    private final List<TrackListener> listeners = new CopyOnWriteArrayList<>();
 
     public Tracker(int distThresh, int maxFramesToSkip, int maxTraceLength, int trackIdCount) {
         this.distThresh = distThresh;
         this.maxFramesToSkip = maxFramesToSkip;
         this.maxTraceLength = maxTraceLength;
         this.trackIdCount = trackIdCount;
+        this.gate = new DistanceGate(distThresh);
+        this.unassignedCost = distThresh;
     }
 
     public ArrayList<Track> getTracks() {
         return tracks;
     }
 
+    public TrackStore getStore() {
+        return store;
+    }
+
+    /**
+     * @return number of updates so far, the time of the last trace points
+     */
+    public long getFrame() {
+        return frameCount;
+    }
+
+    /**
+     * Copy the state of the tracker, on the thread running the updates.
+     */
+    public TrackerSnapshot snapshot() {
+        TraceBuffer[] traces = new TraceBuffer[tracks.size()];
+        for(int i = 0; i < traces.length; i++) {
+            traces[i] = tracks.get(i).getTrace().copy();
+        }
+        return new TrackerSnapshot(frameCount, trackIdCount, Math.max(1, maxTraceLength), store.copy(), traces);
+    }
+
+    /**
+     * Replace the state of the tracker by the one of a snapshot, e.g. on
+     * restart, so the tracks keep their ids and their Kalman state. The
+     * thresholds and the trace decimation stay the ones of this tracker.
+     */
+    public void restore(TrackerSnapshot snapshot) {
+        store.copyFrom(snapshot.getStore());
+        tracks.clear();
+        for(int i = 0; i < store.size(); i++) {
+            Track track = new Track(store, i, Math.max(1, maxTraceLength));
+            TraceBuffer from = snapshot.getTrace(i);
+            TraceBuffer trace = track.getTrace();
+            for(int k = 0; k < from.size(); k++) {
+                trace.add(from.getX(k), from.getY(k), from.getTime(k));
+            }
+            trace.setDecimation(traceDecimation);
+            tracks.add(track);
+        }
+        frameCount = snapshot.getFrame();
+        trackIdCount = snapshot.getTrackIdCount();
+    }
+
+    /**
+     * @param inlineComponentSize number of gated pairs below which a cluster
+     *                            of tracks and detections is assigned on the
+     *                            calling thread instead of the ForkJoinPool
+     */
+    public void setInlineComponentSize(int inlineComponentSize) {
+        solver.setInlineSize(inlineComponentSize);
+    }
+
+    /**
+     * @param frames minimum number of frames between two points kept in the
+     *               traces, so a trace covers maxTraceLength times as many
+     *               frames; 0 keeps every frame
+     */
+    public void setTraceDecimation(int frames) {
+        this.traceDecimation = frames;
+        for (Track track : tracks) {
+            track.getTrace().setDecimation(frames);
+        }
+    }
+
+    /**
+     * @param listener called at the end of every update with the changes of
+     *                 the tracks, on the thread running the update
+     */
+    public void addListener(TrackListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(TrackListener listener) {
+        listeners.remove(listener);
+    }
+
+    public CostFunction getCostFunction() {
+        return costFunction;
+    }
+
+    /**
+     * @param costFunction prices the pairs accepted by the gate, half the
+     *                     distance ({@link EuclideanCost}) by default
+     */
+    public void setCostFunction(CostFunction costFunction) {
+        this.costFunction = costFunction;
+    }
+
+    public double getUnassignedCost() {
+        return unassignedCost;
+    }
+
+    /**
+     * @param unassignedCost cost of leaving a track without detection, in
+     *                       the unit of the cost function. A track is left
+     *                       out when assigning it would raise the cost of
+     *                       the others by more. By default distThresh, the
+     *                       largest cost the default gate accepts. Set it
+     *                       with the cost function and the gate, e.g. to
+     *                       the threshold of a {@link MahalanobisGate}.
+     *                       Lower costs keep the searches of the assignment
+     *                       more local, so faster. Positive infinity
+     *                       assigns as many tracks as possible, but then
+     *                       each track left out searches its whole cluster
+     *                       of tracks.
+     */
+    public void setUnassignedCost(double unassignedCost) {
+        this.unassignedCost = unassignedCost;
+    }
+
+    public Gate getGate() {
+        return gate;
+    }
+
+    /**
+     * @param gate selects the detections each track may be assigned to, by
+     *             default the ones whose half distance to the track is at
+     *             most distThresh ({@link DistanceGate})
+     */
+    public void setGate(Gate gate) {
+        this.gate = gate;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param metrics receives the latency of each stage of the updates and
+     *                the track counters, {@link Metrics#DISABLED} to stop
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Update the tracks with the centroids detected in a frame, see
+     * {@link #Update(DetectionBatch)}.
+     */
     public void Update(ArrayList<Point> detections) {
+        pointBatch.clear();
+        for (Point detection : detections) {
+            pointBatch.add(detection.x, detection.y);
+        }
+        Update(pointBatch);
+    }
+
+    public void Update(DetectionBatch detections) {
         /*Update tracks vector using following steps:
             - Create tracks if no tracks vector found
-            - Calculate cost using sum of square distance
-              between predicted vs detected centroids
-            - Using Hungarian Algorithm assign the correct
-              detected measurements to predicted tracks
+            - Calculate the cost of the pairs of predicted tracks
+              and detections accepted by the gate
+            - Using a sparse assignment solver (Jonker-Volgenant)
+              assign the correct detected measurements to predicted
+              tracks within the distance threshold
               https://en.wikipedia.org/wiki/Hungarian_algorithm
             - Identify tracks with no assignment, if any
             - If tracks are not detected for long time, remove them
@@ -52,120 +221,187 @@ public class Tracker {
             None
         */
 
+        long t = metrics.start();
+        created = 0;
+        frameCount++;
+        int firstNewId = trackIdCount;
+
         // Create tracks if no tracks vector found
         if(tracks.size() == 0) {
-            for (Point detection : detections) {
-                Track track = new Track(detection, trackIdCount);
-                trackIdCount++;
-                tracks.add(track);
+            for(int j = 0; j < detections.size(); j++) {
+                addTrack(detections, j);
             }
         }
+        // the changes are only collected when someone listens; a track is
+        // updated or deleted, and a detection starts at most one track
+        TrackDelta delta = listeners.isEmpty() ? null
+                : new TrackDelta(frameCount, tracks.size() + detections.size());
 
-        // Calculate cost using sum of square distance between
-        // predicted vs detected centroids
+        // Calculate the cost of the pairs accepted by the gate. The
+        // rejected pairs can never be assigned, so each track only looks
+        // at the detections of the grid cells within its search radius.
         int N = tracks.size();
         int M = detections.size();
-        double[][] cost = new double[N][M]; // Cost matrix
+        if(detX.length < M) {
+            detX = new double[Math.max(M, 2 * detX.length)];
+            detY = new double[detX.length];
+        }
+        for(int j = 0; j < M; j++) {
+            detX[j] = detections.getX(j);
+            detY[j] = detections.getY(j);
+        }
+        if(searchRadius.length < N) {
+            searchRadius = new double[Math.max(N, 2 * searchRadius.length)];
+        }
+        // the cells are sized after the mean finite search radius
+        double cellSize = 0;
+        int finite = 0;
         for(int i = 0; i < N; i++) {
-            for(int j = 0; j < M; j++) {
-                Point diff = diffPoint(tracks.get(i).getPrediction(), detections.get(j));
-                double distance = Math.sqrt(diff.x*diff.x + diff.y*diff.y);
-                // Let's average the squared ERROR
-                cost[i][j] = distance*0.5;
+            searchRadius[i] = gate.getSearchRadius(store, i);
+            if(searchRadius[i] < Double.POSITIVE_INFINITY) {
+                cellSize += searchRadius[i];
+                finite++;
             }
         }
+        grid.build(detX, detY, M, finite > 0 ? cellSize / finite : 1);
 
-        // Using Hungarian Algorithm assign the correct detected measurements
-        // to predicted tracks
-        //INDArray assigment = Nd4j.zeros(N);
-        //assigment.add(-1);
-
-        int[] assigmentL = new HungarianAlgorithm(cost).execute();
-        List<Integer> assigment = Lists.newArrayList(Ints.asList(assigmentL));
-
-        //  Identify tracks with no assignment, if any
-        ArrayList<Integer> unAssignedTracks = new ArrayList<>();
+        costs.reset(N, M);
         for(int i = 0; i < N; i++) {
-            if(assigment.get(i) != -1) {
-                // check for cost distance threshold.
-                // If cost is very high then un_assign (delete) the track
-                if(cost[i][assigment.get(i)] > distThresh) {
-                    assigment.set(i, -1);
-                    unAssignedTracks.add(i);
-                } else {
-                    tracks.get(i).addSkippedFrames();
+            int found = grid.query(store.getX(i), store.getY(i), searchRadius[i]);
+            for(int k = 0; k < found; k++) {
+                int j = grid.found(k);
+                if(gate.accept(store, i, detections, j)) {
+                    double cost = costFunction.cost(store, i, detections, j);
+                    if(cost < CostFunction.REJECT) {
+                        costs.add(i, j, cost);
+                    }
                 }
             }
         }
 
-        // If tracks are not detected for long time, remove them
-        ArrayList<Integer> delTracks = new ArrayList<>();
-        for(int i = 0; i < tracks.size(); i++) {
-            if(tracks.get(i).getSkippedFrames() > maxFramesToSkip) {
-                delTracks.add(i);
-            }
-        }
-        if(delTracks.size() > 0) { // only when skipped frame exceeds max
-            for(Integer id : delTracks) {
-                if(id < tracks.size()) {
-                    tracks.remove(id);
-                    assigment.remove(id);
-                } else {
-                    System.out.println("ERROR: id is greater than length of tracks");
-                }
-            }
+        t = metrics.lap(Metrics.Stage.COST, t);
+
+        // Using the sparse assignment solver assign the correct detected
+        // measurements to predicted tracks, each independent cluster of
+        // tracks and detections being solved on its own. A track whose
+        // every detection would cost more than unassignedCost to the
+        // others is left unassigned; the dummy is priced just above it so
+        // that a pair costing exactly unassignedCost, at the edge of the
+        // gate, is still assigned.
+        if(assigmentL.length < N) {
+            assigmentL = new int[Math.max(N, 2 * assigmentL.length)];
         }
+        solver.execute(costs, assigmentL, Math.nextUp(unassignedCost));
+        int[] assigment = assigmentL;
 
-        // Now look for un_assigned detects
-        ArrayList<Integer> unAssignedDetects = new ArrayList<>();
-        for(int i = 0; i < detections.size(); i++) {
-            if(!assigment.contains(i)) {
-                unAssignedDetects.add(i);
+        // Identify tracks with no assignment, and mark the detections used
+        detectionUsed.clear();
+        for(int i = 0; i < N; i++) {
+            if(assigment[i] != -1) {
+                detectionUsed.set(assigment[i]);
+            } else {
+                tracks.get(i).addSkippedFrames();
             }
         }
 
-        // Start new tracks
-        if(unAssignedDetects.size() != 0) {
-            for (Integer unAssignedDetect : unAssignedDetects) {
-                Track track = new Track(detections.get(unAssignedDetect), trackIdCount);
-                trackIdCount++;
-                tracks.add(track);
+        // If tracks are not detected for long time, remove them. The
+        // survivors are compacted in place, keeping their order, with
+        // their assignment.
+        int deleted = 0;
+        int alive = 0;
+        for(int i = 0; i < N; i++) {
+            Track track = tracks.get(i);
+            if(store.getSkippedFrames(i) > maxFramesToSkip) {
+                deleted++;
+                if(delta != null) {
+                    delta.add(TrackDelta.Kind.DELETED, track);
+                }
+            } else {
+                if(alive != i) {
+                    store.move(i, alive);
+                    track.setSlot(alive);
+                    tracks.set(alive, track);
+                    assigment[alive] = assigment[i];
+                }
+                alive++;
             }
         }
+        store.truncate(alive);
+        tracks.subList(alive, N).clear();
+        N = alive;
+
+        t = metrics.lap(Metrics.Stage.ASSIGN, t);
 
-        // Update KalmanFilter state, lastResults and tracks trace
-        for(int i = 0; i < assigment.size(); i++) {
-            tracks.get(i).getKF().predict();
+        // Predict the state of every existing track in one pass
+        store.predictAll(dt);
 
-            if(assigment.get(i) != -1) {
+        // Start new tracks from the un_assigned detects
+        for(int j = detectionUsed.nextClearBit(0); j < M; j = detectionUsed.nextClearBit(j + 1)) {
+            addTrack(detections, j);
+        }
+
+        // Update KalmanFilter state
+        int coasting = 0;
+        for(int i = 0; i < N; i++) {
+            int j = assigment[i];
+            if(j != -1) {
                 tracks.get(i).setSkippedFrames(0);
-                tracks.get(i).setPrediction(stateVectorToPoint(tracks.get(i).getKF().correct(pointToStateVector(detections.get(assigment.get(i))), true)));
+                store.correct(i, (int) detections.getX(j), (int) detections.getY(j));
+                store.setShape(i, detections.getRadius(j), detections.getClassId(j));
             } else {
-                tracks.get(i).setPrediction(stateVectorToPoint(tracks.get(i).getKF().correct(new SimpleMatrix(new double[][]{{0}, {0}}), false)));
+                coasting++;
             }
+        }
+        t = metrics.lap(Metrics.Stage.KALMAN, t);
 
-            if(tracks.get(i).getTrace().size() > maxTraceLength) {
-                for(int j = 0; j < tracks.get(i).getTrace().size() - maxTraceLength; j++) {
-                    tracks.get(i).delPoint(j);
+        // Update tracks trace
+        for(int i = 0; i < N; i++) {
+            // the trace keeps the last maxTraceLength points
+            tracks.get(i).addPoint(frameCount);
+        }
+        metrics.lap(Metrics.Stage.TRACE, t);
+        metrics.frame(created, deleted, coasting, tracks.size());
+
+        if(delta != null) {
+            // the coasting tracks are left out, the listeners infer them
+            for(int i = 0; i < tracks.size(); i++) {
+                Track track = tracks.get(i);
+                if(track.getTrack_id() >= firstNewId) {
+                    delta.add(TrackDelta.Kind.BORN, track);
+                } else if(i < N && assigment[i] != -1) {
+                    delta.add(TrackDelta.Kind.UPDATED, track);
+                }
+            }
+            for(TrackListener listener : listeners) {
+                try {
+                    listener.onDelta(delta);
+                } catch (RuntimeException e) {
+                    System.err.println("Exception in track listener: " + e);
                 }
             }
-
-            tracks.get(i).addPoint(tracks.get(i).getPrediction());
-            tracks.get(i).getKF().setLastResult(pointToStateVector(tracks.get(i).getPrediction()));
         }
     }
 
-
-    private Point diffPoint(Point A, Point B) {
-        return new Point(A.x-B.x, A.y- B.y);
-    }
-
-    private Point stateVectorToPoint(SimpleMatrix u) {
-        return new Point(u.get(0,0), u.get(1,0));
+    /**
+     * Advance the tracks by one frame without detection, e.g. a frame
+     * skipped under load: the Kalman state is only predicted. The frame is
+     * not counted as missed by the tracks, nor added to their traces.
+     */
+    public void predict() {
+        long t = metrics.start();
+        frameCount++;
+        store.predictAll(dt);
+        metrics.lap(Metrics.Stage.KALMAN, t);
+        metrics.predicted();
     }
 
-    private SimpleMatrix pointToStateVector(Point p) {
-        Double[] d = new Double[]{p.x, p.y};
-        return new SimpleMatrix(new double[][]{{d[0].intValue()}, {d[1].intValue()}});
+    private void addTrack(DetectionBatch detections, int j) {
+        int slot = store.add(trackIdCount, detections.getX(j), detections.getY(j),
+                detections.getRadius(j), detections.getClassId(j));
+        trackIdCount++;
+        created++;
+        Track track = new Track(store, slot, Math.max(1, maxTraceLength));
+        track.getTrace().setDecimation(traceDecimation);
+        tracks.add(track);
     }
 }
@@ -0,0 +1,115 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Copy of the full state of a {@link Tracker}: the frame count, the next
+ * track id, the Kalman state of every track and their traces. A snapshot
+ * is taken on the thread running the updates with
+ * {@link Tracker#snapshot()}, which only copies primitive arrays, and can
+ * then be encoded on another thread.
+ * <p>
+ * The binary format starts with {@link #FORMAT_VERSION}, a reader refuses
+ * the other versions. All numbers are big endian.
+ */
+public class TrackerSnapshot {
+
+    public static final int FORMAT_VERSION = 2;
+
+    private final long frame;
+    private final int trackIdCount;
+    private final int traceCapacity;
+    private final TrackStore store;
+    private final TraceBuffer[] traces;
+
+    /**
+     * @param traceCapacity number of points of the traces of the tracker
+     * @param traces trace of the track of each slot of the store
+     */
+    TrackerSnapshot(long frame, int trackIdCount, int traceCapacity, TrackStore store, TraceBuffer[] traces) {
+        if (traces.length != store.size()) {
+            throw new IllegalArgumentException(traces.length + " traces for " + store.size() + " tracks");
+        }
+        this.frame = frame;
+        this.trackIdCount = trackIdCount;
+        this.traceCapacity = traceCapacity;
+        this.store = store;
+        this.traces = traces;
+    }
+
+    /**
+     * @return number of updates of the tracker
+     */
+    public long getFrame() {
+        return frame;
+    }
+
+    /**
+     * @return id of the next track
+     */
+    public int getTrackIdCount() {
+        return trackIdCount;
+    }
+
+    public int getTraceCapacity() {
+        return traceCapacity;
+    }
+
+    /**
+     * @return the state of the tracks, must not be modified
+     */
+    public TrackStore getStore() {
+        return store;
+    }
+
+    public int getTrackCount() {
+        return traces.length;
+    }
+
+    /**
+     * @return trace of the track of the slot, must not be modified
+     */
+    public TraceBuffer getTrace(int slot) {
+        return traces[slot];
+    }
+
+    /**
+     * @return number of bytes written by {@link #write(ByteBuffer)}
+     */
+    public int byteSize() {
+        int bytes = 4 + 8 + 4 + 4 + store.byteSize();
+        for (TraceBuffer trace : traces) {
+            bytes += trace.byteSize();
+        }
+        return bytes;
+    }
+
+    public void write(ByteBuffer out) {
+        out.putInt(FORMAT_VERSION).putLong(frame).putInt(trackIdCount).putInt(traceCapacity);
+        store.write(out);
+        for (TraceBuffer trace : traces) {
+            trace.write(out);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the data is not a snapshot of
+     *                                  this version
+     */
+    public static TrackerSnapshot read(ByteBuffer in) {
+        int version = in.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported snapshot version " + version);
+        }
+        long frame = in.getLong();
+        int trackIdCount = in.getInt();
+        int traceCapacity = in.getInt();
+        if (traceCapacity < 1) {
+            throw new IllegalArgumentException("Invalid trace capacity: " + traceCapacity);
+        }
+        TrackStore store = TrackStore.read(in);
+        TraceBuffer[] traces = new TraceBuffer[store.size()];
+        for (int i = 0; i < traces.length; i++) {
+            traces[i] = TraceBuffer.read(in, traceCapacity);
+        }
+        return new TrackerSnapshot(frame, trackIdCount, traceCapacity, store, traces);
+    }
+}
@@ -0,0 +1,326 @@
+import org.opencv.core.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Headless service running one {@link Tracker} per stream (camera) on a
+ * shared work stealing pool.
+ * <p>
+ * Detection batches are queued per stream and the stream is scheduled on
+ * the pool when it has work. A stream runs on at most one thread at a
+ * time, so the batches of a stream are applied in submission order and
+ * its tracker never needs locking, while different streams run in
+ * parallel. A scheduled stream applies at most a few batches before
+ * giving its thread to the next stream waiting, and keeps at most
+ * maxPending batches (the oldest are dropped), so one slow camera cannot
+ * stall the others.
+ */
+public class TrackingService implements AutoCloseable {
+
+    private static final int DEFAULT_MAX_PENDING = 16;
+    private static final int BATCHES_PER_RUN = 4;
+
+    private final ExecutorService pool;
+    private final boolean ownsPool;
+    private final int maxPending;
+    private final Map<String, Stream> streams = new ConcurrentHashMap<>();
+    // streams with work, in the order they asked for a thread
+    private final ConcurrentLinkedQueue<Stream> ready = new ConcurrentLinkedQueue<>();
+    private final Runnable runNext = () -> {
+        Stream stream = ready.poll();
+        if (stream != null) {
+            stream.run();
+        }
+    };
+
+    public TrackingService() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism number of threads of the pool created for the service
+     */
+    public TrackingService(int parallelism) {
+        // FIFO mode, so the local queue of a worker does not starve the
+        // submissions of other threads
+        this(new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true), true,
+                DEFAULT_MAX_PENDING);
+    }
+
+    /**
+     * @param pool pool running the streams, it is not shut down on close
+     * @param maxPending number of queued batches kept per stream
+     */
+    public TrackingService(ExecutorService pool, int maxPending) {
+        this(pool, false, maxPending);
+    }
+
+    private TrackingService(ExecutorService pool, boolean ownsPool, int maxPending) {
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Register a stream.
+     *
+     * @param streamId identification of the stream
+     * @param tracker tracker of the stream, only used from the pool afterwards
+     * @param onUpdate called on the pool after every update of the tracker, may be null
+     */
+    public void register(String streamId, Tracker tracker, Consumer<Tracker> onUpdate) {
+        Stream stream = new Stream(streamId, tracker, onUpdate);
+        if (streams.putIfAbsent(streamId, stream) != null) {
+            throw new IllegalArgumentException("Stream already registered: " + streamId);
+        }
+    }
+
+    public void register(String streamId, Tracker tracker) {
+        register(streamId, tracker, null);
+    }
+
+    /**
+     * Unregister a stream, its pending batches are discarded. A batch
+     * being applied when this is called still completes.
+     *
+     * @return the tracker of the stream, or null if the stream is unknown
+     */
+    public Tracker unregister(String streamId) {
+        Stream stream = streams.remove(streamId);
+        if (stream == null) {
+            return null;
+        }
+        stream.closed = true;
+        stream.queue.clear();
+        return stream.tracker;
+    }
+
+    /**
+     * Queue the detections of one frame of a stream.
+     *
+     * @return false if the stream is not registered
+     */
+    public boolean submit(String streamId, ArrayList<Point> detections) {
+        DetectionBatch batch = new DetectionBatch();
+        for (Point detection : detections) {
+            batch.add(detection.x, detection.y);
+        }
+        return submit(streamId, batch);
+    }
+
+    /**
+     * Queue the detections of one frame of a stream. The batch is kept
+     * until it is applied, it must not be filled again by the caller (see
+     * {@link DetectionBatch#copy()}).
+     *
+     * @return false if the stream is not registered
+     */
+    public boolean submit(String streamId, DetectionBatch detections) {
+        Stream stream = streams.get(streamId);
+        if (stream == null) {
+            return false;
+        }
+        stream.queue.add(new Batch(detections, System.nanoTime()));
+        if (stream.pending.incrementAndGet() > maxPending) {
+            // drop the oldest batch to bound the lag of the stream
+            if (stream.queue.poll() != null) {
+                stream.pending.decrementAndGet();
+                stream.dropped.incrementAndGet();
+            }
+        }
+        stream.schedule();
+        return true;
+    }
+
+    /**
+     * @return the status of the stream, or null if the stream is unknown
+     */
+    public StreamStatus getStatus(String streamId) {
+        Stream stream = streams.get(streamId);
+        return stream == null ? null : stream.status();
+    }
+
+    public List<StreamStatus> getStatuses() {
+        List<StreamStatus> statuses = new ArrayList<>(streams.size());
+        for (Stream stream : streams.values()) {
+            statuses.add(stream.status());
+        }
+        return statuses;
+    }
+
+    /**
+     * Unregister every stream and shut the pool down if it was created by
+     * the service.
+     */
+    @Override
+    public void close() {
+        for (String streamId : new ArrayList<>(streams.keySet())) {
+            unregister(streamId);
+        }
+        if (ownsPool) {
+            try {
+                pool.shutdown();
+                pool.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                System.err.println("Interrupted while stopping the tracking pool: " + e);
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Snapshot of the lag of one stream.
+     */
+    public static final class StreamStatus {
+        private final String streamId;
+        private final int pending;
+        private final long lagNanos;
+        private final long processed;
+        private final long dropped;
+        private final long lastUpdateNanos;
+
+        StreamStatus(String streamId, int pending, long lagNanos, long processed, long dropped,
+                     long lastUpdateNanos) {
+            this.streamId = streamId;
+            this.pending = pending;
+            this.lagNanos = lagNanos;
+            this.processed = processed;
+            this.dropped = dropped;
+            this.lastUpdateNanos = lastUpdateNanos;
+        }
+
+        public String getStreamId() {
+            return streamId;
+        }
+
+        /**
+         * @return number of batches waiting to be applied
+         */
+        public int getPending() {
+            return pending;
+        }
+
+        /**
+         * @return age of the oldest waiting batch, 0 when the stream is idle
+         */
+        public long getLagNanos() {
+            return lagNanos;
+        }
+
+        public long getProcessed() {
+            return processed;
+        }
+
+        /**
+         * @return number of batches dropped because the stream fell behind
+         */
+        public long getDropped() {
+            return dropped;
+        }
+
+        /**
+         * @return duration of the last update of the tracker
+         */
+        public long getLastUpdateNanos() {
+            return lastUpdateNanos;
+        }
+
+        @Override
+        public String toString() {
+            return streamId + ": pending=" + pending + " lag=" + lagNanos / 1000000 + "ms processed="
+                    + processed + " dropped=" + dropped + " lastUpdate=" + lastUpdateNanos / 1000 + "us";
+        }
+    }
+
+    private static final class Batch {
+        final DetectionBatch detections;
+        final long submitted;
+
+        Batch(DetectionBatch detections, long submitted) {
+            this.detections = detections;
+            this.submitted = submitted;
+        }
+    }
+
+    /**
+     * A stream and its queue. The scheduled flag makes sure the stream is
+     * at most once in the ready queue, and runs on at most one thread.
+     */
+    private final class Stream implements Runnable {
+        final String streamId;
+        final Tracker tracker;
+        final Consumer<Tracker> onUpdate;
+        final ConcurrentLinkedQueue<Batch> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger pending = new AtomicInteger();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        final AtomicLong processed = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        volatile long lastUpdateNanos;
+        volatile boolean closed;
+
+        Stream(String streamId, Tracker tracker, Consumer<Tracker> onUpdate) {
+            this.streamId = streamId;
+            this.tracker = tracker;
+            this.onUpdate = onUpdate;
+        }
+
+        void schedule() {
+            if (!closed && scheduled.compareAndSet(false, true)) {
+                // the pool tasks are interchangeable and run the stream at
+                // the head of the ready queue: a stream rescheduled by its
+                // own run goes behind the waiting ones, even though the pool
+                // runs the task on the same worker first
+                ready.add(this);
+                pool.execute(runNext);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int n = 0; n < BATCHES_PER_RUN && !closed; n++) {
+                    Batch batch = queue.poll();
+                    if (batch == null) {
+                        break;
+                    }
+                    pending.decrementAndGet();
+                    long start = System.nanoTime();
+                    // an empty batch still ages the tracks, which expire
+                    // after maxFramesToSkip frames without detection
+                    tracker.Update(batch.detections);
+                    lastUpdateNanos = System.nanoTime() - start;
+                    processed.incrementAndGet();
+                    if (onUpdate != null) {
+                        onUpdate.accept(tracker);
+                    }
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Exception in stream " + streamId + ": " + e);
+            } finally {
+                scheduled.set(false);
+                // work submitted while running, or left over for fairness
+                if (!queue.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+
+        StreamStatus status() {
+            Batch oldest = queue.peek();
+            long lag = oldest == null ? 0 : System.nanoTime() - oldest.submitted;
+            return new StreamStatus(streamId, Math.max(0, pending.get()), lag, processed.get(), dropped.get(),
+                    lastUpdateNanos);
+        }
+    }
+}
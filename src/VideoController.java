@@ -1,7 +1,10 @@
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import javafx.scene.control.Slider;
@@ -9,6 +12,7 @@ import org.opencv.core.*;
 import org.opencv.imgcodecs.Imgcodecs;
 import org.opencv.imgproc.Imgproc;
 import org.opencv.videoio.VideoCapture;
+import org.opencv.videoio.Videoio;
 
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
@@ -39,6 +43,9 @@ public class VideoController {
 
     // a timer for acquiring the video stream
     private ScheduledExecutorService timer;
+    // paces the frames at the rate of the video, detecting one frame in
+    // up to 8 when the processing is slower than the video
+    private FrameScheduler scheduler;
     // the OpenCV object that realizes the video capture
     private VideoCapture capture;
     // a flag to change the button behavior
@@ -54,18 +61,33 @@ public class VideoController {
 
     private Tracker tracker = new Tracker(200, 30, 300, 100);
 
-    // Color
-    private final Scalar blue = new Scalar(255, 0, 0);
-    private final Scalar green = new Scalar(0, 255, 0);
-    private final Scalar red = new Scalar(0, 0, 255);
-    private final Scalar cyan = new Scalar (255, 255, 0);
-    private final Scalar yellow = new Scalar(0, 255, 255);
-    private final Scalar magenta = new Scalar(255, 0, 255);
-    private final Scalar pink = new Scalar(255, 127, 255);
-    private final Scalar purple = new Scalar(127, 0, 255);
-    private final Scalar purpleblack = new Scalar(127, 0, 127);
+    private final TraceRenderer traceRenderer = new TraceRenderer();
 
-    private final ArrayList<Scalar> trackColors = new ArrayList<>();
+    // keeps the detector of the video warm between stop and start; only the
+    // limit rectangle is processed, the background model may be downscaled
+    // with -Ddetector.scale=0.5
+    private final DetectorFactory detectorFactory = new DetectorFactory(() -> {
+        Detectors detectors = new Detectors();
+        detectors.addRegion(Detectors.getLimit(videoSize));
+        detectors.setScale(Double.parseDouble(System.getProperty("detector.scale", "1")));
+        return detectors;
+    }, true, 1);
+    private Detectors detectors;
+    // detections of the current frame, filled again every frame
+    private final DetectionBatch centers = new DetectionBatch();
+
+    // stage latencies, printed and published over JMX with -Dtracker.metrics=true
+    private MetricsReporter logReporter;
+    private MetricsReporter jmxReporter;
+
+    // state of the tracker saved every second to -Dtracker.snapshot=<file>
+    // and restored from it on start
+    private SnapshotFile snapshotFile;
+    private SnapshotWriter snapshotWriter;
+
+    // every state of the tracks appended to -Dtracker.history=<directory>,
+    // keeping at most 1 GB of segments
+    private HistoryStore history;
 
 
     /**
@@ -75,16 +97,6 @@ public class VideoController {
         this.capture = new VideoCapture();
         this.threshold = new Slider();
         this.cameraActive = false;
-
-        trackColors.add(blue);
-        trackColors.add(green);
-        trackColors.add(red);
-        trackColors.add(cyan);
-        trackColors.add(yellow);
-        trackColors.add(magenta);
-        trackColors.add(pink);
-        trackColors.add(purple);
-        trackColors.add(purpleblack);
     }
 
     /**
@@ -104,22 +116,47 @@ public class VideoController {
             // is the video stream available?
             if (this.capture.isOpened()) {
                 this.cameraActive = true;
+                this.detectors = detectorFactory.acquire(videoUrl);
+
+                if (Boolean.getBoolean("tracker.metrics") && logReporter == null) {
+                    Metrics metrics = new Metrics();
+                    tracker.setMetrics(metrics);
+                    logReporter = new MetricsReporter(metrics, new LogMetricsExporter(), 10, TimeUnit.SECONDS);
+                    jmxReporter = new MetricsReporter(metrics, new JmxMetricsExporter("tracker:type=Metrics"),
+                            1, TimeUnit.SECONDS);
+                }
 
-                // grab a frame every 33 ms (30 frames/sec)
-                Runnable frameGrabber = new Runnable() {
+                String snapshotPath = System.getProperty("tracker.snapshot");
+                if (snapshotPath != null && snapshotWriter == null) {
+                    try {
+                        snapshotFile = new SnapshotFile(Paths.get(snapshotPath), 1 << 20);
+                        TrackerSnapshot snapshot = snapshotFile.read();
+                        if (snapshot != null && tracker.getFrame() == 0) {
+                            tracker.restore(snapshot);
+                        }
+                        snapshotWriter = new SnapshotWriter(snapshotFile, 30);
+                    } catch (IOException e) {
+                        System.err.println("Impossible to open the tracker snapshot " + snapshotPath + ": " + e);
+                    }
+                }
 
-                    @Override
-                    public void run() {
-                      // effectively grab and process a single frame
-                        Mat frame = grabFrame(threshold);
-                        // convert and show the frame
-                        Image imageToShow = Utils.mat2Image(frame);
-                        updateImageView(currentFrame, imageToShow);
+                String historyPath = System.getProperty("tracker.history");
+                if (historyPath != null && history == null) {
+                    try {
+                        history = new HistoryStore(Paths.get(historyPath), 1 << 20, 1L << 30, 0);
+                    } catch (IOException e) {
+                        System.err.println("Impossible to open the track history " + historyPath + ": " + e);
                     }
-                };
+                }
 
-                this.timer = Executors.newSingleThreadScheduledExecutor();
-                this.timer.scheduleAtFixedRate(frameGrabber, 0, 33, TimeUnit.MILLISECONDS);
+                // grab the frames at the frame rate of the video
+                this.scheduler = new FrameScheduler(this.capture.get(Videoio.CAP_PROP_FPS), 8);
+                this.scheduler.start(System.nanoTime());
+                // like a periodic task, the next frame is cancelled on stop
+                ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+                executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+                this.timer = executor;
+                this.timer.schedule(this::nextFrame, 0, TimeUnit.NANOSECONDS);
 
                 // update the button content
                 this.button.setText("Stop Camera");
@@ -138,6 +175,40 @@ public class VideoController {
         }
     }
 
+    /**
+     * Process the frame due now, then schedule the next one. The frames
+     * too late to be shown and the ones skipped to keep up with the video
+     * are only grabbed, the tracks being predicted through them.
+     */
+    private void nextFrame() {
+        Metrics metrics = tracker.getMetrics();
+        int late = scheduler.lateFrames(System.nanoTime());
+        for (int k = 0; k < late && this.capture.grab(); k++) {
+            tracker.predict();
+        }
+        metrics.dropped(late);
+
+        if (scheduler.nextFrameDetected()) {
+            long start = System.nanoTime();
+            // effectively grab and process a single frame
+            Mat frame = grabFrame(threshold);
+            // convert and show the frame
+            long t = metrics.start();
+            Image imageToShow = Utils.mat2Image(frame);
+            metrics.lap(Metrics.Stage.RENDER, t);
+            updateImageView(currentFrame, imageToShow);
+            scheduler.processed(System.nanoTime() - start);
+        } else if (this.capture.grab()) {
+            tracker.predict();
+        }
+
+        try {
+            this.timer.schedule(this::nextFrame, scheduler.delay(System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // the acquisition was stopped
+        }
+    }
+
     /**
      * Get a frame from the opened video stream (if any)
      *
@@ -153,30 +224,38 @@ public class VideoController {
             this.capture.read(frame);
 
             // Detect and return centeroids of the objects in the frame
-            ArrayList<Point> centers = Detectors.getInstance().detect(frame, threshValue.getValue());
+            Metrics metrics = tracker.getMetrics();
+            long t = metrics.start();
+            detectors.detect(frame, centers);
+            metrics.lap(Metrics.Stage.DETECT, t);
 
             // If centroids are detected then track them
             if(centers.size() > 0) {
 
                 // Track object using Kalman Filter
                 tracker.Update(centers);
+                if (snapshotWriter != null) {
+                    snapshotWriter.offer(tracker);
+                }
+                if (history != null) {
+                    try {
+                        history.append(tracker);
+                    } catch (IOException e) {
+                        System.err.println("Exception in appending to the track history: " + e);
+                        history.close();
+                        history = null;
+                    }
+                }
 
                 for(int i = 0; i < tracker.getTracks().size(); i++) {
-                    if(tracker.getTracks().get(i).getTrace().size() > 1) {
-                        for(int j = 0; j < tracker.getTracks().get(i).getTrace().size() - 1; j++) {
-                            // Draw trace line
-                            Point pt1 = tracker.getTracks().get(i).getTrace().get(j);
-                            Point pt2 = tracker.getTracks().get(i).getTrace().get(j+1);
-
-                            int clr = tracker.getTracks().get(i).getTrack_id() % 9;
-                            Imgproc.line(frame, pt1, pt2, trackColors.get(clr), 2);
-                        }
-                    }
+                    // Draw trace line
+                    Track track = tracker.getTracks().get(i);
+                    traceRenderer.drawTrace(frame, track.getTrack_id(), track.getTrace());
                 }
 
             }
 
-            frame = Detectors.getInstance().getFrame();
+            frame = detectors.getFrame();
         }
 
         //return Detectors.edges;
@@ -188,20 +267,63 @@ public class VideoController {
      */
     private void stopAcquisition() {
         if (this.timer != null && !this.timer.isShutdown()) {
-            try {
-                // stop the timer
-                this.timer.shutdown();
-                this.timer.awaitTermination(33, TimeUnit.MILLISECONDS);
-            } catch (InterruptedException e) {
-                // log any exception
-                System.err.println("Exception in stopping the frame capture, trying to release the camera now... " + e);
+            // stop the timer, and wait for the frame being processed: it
+            // still uses the capture, the detectors, the snapshot and the history
+            this.timer.shutdown();
+            boolean interrupted = false;
+            while (!this.timer.isTerminated()) {
+                try {
+                    this.timer.awaitTermination(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
             }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (this.scheduler != null) {
+            System.out.println(String.format("frames detected=%d predicted=%d dropped=%d stride=%d",
+                    scheduler.getDetected(), scheduler.getPredicted(), scheduler.getDropped(),
+                    scheduler.getStride()));
+            this.scheduler = null;
         }
 
         if (this.capture.isOpened()) {
             // release the camera
             this.capture.release();
         }
+
+        if (this.detectors != null) {
+            detectorFactory.release(videoUrl, this.detectors);
+            this.detectors = null;
+        }
+
+        if (this.logReporter != null) {
+            this.logReporter.close();
+            this.jmxReporter.close();
+            this.logReporter = null;
+            this.jmxReporter = null;
+            tracker.setMetrics(Metrics.DISABLED);
+        }
+
+        if (this.snapshotWriter != null) {
+            this.snapshotWriter.close();
+            this.snapshotWriter = null;
+            try {
+                this.snapshotFile.write(tracker.snapshot());
+                this.snapshotFile.close();
+            } catch (IOException e) {
+                System.err.println("Impossible to save the tracker snapshot: " + e);
+            }
+            this.snapshotFile = null;
+        }
+
+        if (this.history != null) {
+            this.history.close();
+            this.history = null;
+        }
     }
 
     /**
@@ -219,6 +341,7 @@ public class VideoController {
      */
     protected void setClosed() {
         this.stopAcquisition();
+        this.detectorFactory.close();
     }
 
 }
@@ -0,0 +1,163 @@
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class BatchTrackerTest {
+
+    private static final int FRAMES = 40;
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        nu.pattern.OpenCV.loadLocally();
+    }
+
+    /**
+     * @return a source of frames whose pixels hold the index of the frame
+     */
+    private static Pipeline.FrameSource frames(int count) {
+        int[] read = {0};
+        return image -> {
+            if (read[0] == count) {
+                return false;
+            }
+            new Mat(8, 8, CvType.CV_8UC1, new Scalar(read[0]++)).copyTo(image);
+            return true;
+        };
+    }
+
+    /**
+     * Detects nothing in every fourth frame, else one blob whose x tells
+     * the frame and whose y counts the frames the detector saw, like the
+     * state of a background model.
+     */
+    private static class StubDetectors extends Detectors {
+        int seen;
+
+        @Override
+        public void detect(Mat frame, DetectionBatch detections) {
+            detections.clear();
+            int index = (int) frame.get(0, 0)[0];
+            seen++;
+            if (index % 4 != 3) {
+                detections.add(10 * index, seen);
+            }
+        }
+    }
+
+    /**
+     * Records the detections given to each update.
+     */
+    private static class RecordingTracker extends Tracker {
+        final List<String> updates = new ArrayList<>();
+
+        RecordingTracker() {
+            super(30, 3, 5, 0);
+        }
+
+        @Override
+        public void Update(DetectionBatch detections) {
+            updates.add(detections.size() == 0 ? "-" : detections.getX(0) + "," + detections.getY(0));
+            super.Update(detections);
+        }
+    }
+
+    private static long run(Pipeline.FrameSource source, Tracker tracker, int workers, int chunk, int warmup)
+            throws InterruptedException, IOException {
+        try (DetectorFactory factory = new DetectorFactory(StubDetectors::new, false, 0)) {
+            return new BatchTracker(source, factory, tracker, null, workers, chunk, warmup, (workers + 1) * chunk)
+                    .run();
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void framesReachTheTrackerInOrder() throws Exception {
+        RecordingTracker tracker = new RecordingTracker();
+        assertEquals(FRAMES, run(frames(FRAMES), tracker, 3, 4, 2));
+
+        assertEquals(FRAMES, tracker.updates.size());
+        for (int k = 0; k < FRAMES; k++) {
+            String update = tracker.updates.get(k);
+            // empty frames included
+            assertEquals("frame " + k, k % 4 == 3 ? "-" : String.valueOf(10.0 * k), update.split(",")[0]);
+        }
+        assertEquals(FRAMES, tracker.getFrame());
+    }
+
+    @Test(timeout = 20000)
+    public void oneWorkerGivesTheSequentialRun() throws Exception {
+        RecordingTracker batch = new RecordingTracker();
+        run(frames(FRAMES), batch, 1, 4, 2);
+
+        RecordingTracker sequential = new RecordingTracker();
+        StubDetectors detectors = new StubDetectors();
+        Pipeline.FrameSource source = frames(FRAMES);
+        Mat image = new Mat();
+        DetectionBatch detections = new DetectionBatch();
+        while (source.read(image)) {
+            detectors.detect(image, detections);
+            sequential.Update(detections);
+        }
+
+        assertEquals(sequential.updates, batch.updates);
+        assertEquals(sequential.getTracks().size(), batch.getTracks().size());
+        for (int i = 0; i < sequential.getTracks().size(); i++) {
+            assertEquals(sequential.getTracks().get(i).getX(), batch.getTracks().get(i).getX(), 0);
+            assertEquals(sequential.getTracks().get(i).getY(), batch.getTracks().get(i).getY(), 0);
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void runEndsAtTheEndOfAnEmptySource() throws Exception {
+        RecordingTracker tracker = new RecordingTracker();
+        assertEquals(0, run(frames(0), tracker, 2, 4, 2));
+        assertEquals(0, tracker.updates.size());
+    }
+
+    @Test(timeout = 20000)
+    public void workerDyingOfAnErrorStopsTheRun() throws Exception {
+        Error death = new Error("detector died");
+        try (DetectorFactory factory = new DetectorFactory(() -> new StubDetectors() {
+            @Override
+            public void detect(Mat frame, DetectionBatch detections) {
+                if (frame.get(0, 0)[0] == 10) {
+                    throw death;
+                }
+                super.detect(frame, detections);
+            }
+        }, false, 0)) {
+            new BatchTracker(frames(FRAMES), factory, new Tracker(30, 3, 5, 0), null, 2, 4, 2, 12).run();
+            fail("the run went on without frame 10");
+        } catch (Error e) {
+            assertSame(death, e);
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void decoderFailureStopsTheRun() throws Exception {
+        Pipeline.FrameSource frames = frames(FRAMES);
+        RuntimeException failure = new IllegalStateException("unreadable frame");
+        Pipeline.FrameSource source = image -> {
+            boolean read = frames.read(image);
+            if (read && image.get(0, 0)[0] == 5) {
+                throw failure;
+            }
+            return read;
+        };
+        try {
+            run(source, new Tracker(30, 3, 5, 0), 2, 4, 2);
+            fail("the run went on without frame 5");
+        } catch (IOException e) {
+            assertSame(failure, e.getCause());
+        }
+    }
+}
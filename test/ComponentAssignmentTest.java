@@ -0,0 +1,84 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class ComponentAssignmentTest {
+
+    @Test
+    public void partsGiveTheAssignmentOfTheWholeProblem() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            // a small inline size splits the problems in many parts
+            ComponentAssignment components = new ComponentAssignment(pool, 8);
+            for (int seed = 0; seed < 50; seed++) {
+                SparseCostMatrix costs = clusters(new Random(seed), 40);
+                assertArrayEquals("seed " + seed, solve(costs), components.execute(costs, new int[costs.getRows()]));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void instancesSolvingConcurrentlyShareTheSolvers() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < 4; c++) {
+                final int caller = c;
+                futures.add(callers.submit(() -> {
+                    // two instances on one thread, each with its own pool parts
+                    ComponentAssignment a = new ComponentAssignment(pool, 8);
+                    ComponentAssignment b = new ComponentAssignment(pool, 8);
+                    for (int seed = 0; seed < 50; seed++) {
+                        Random random = new Random(1000 * caller + seed);
+                        SparseCostMatrix first = clusters(random, 30);
+                        SparseCostMatrix second = clusters(random, 60);
+                        String where = "caller " + caller + " seed " + seed;
+                        assertArrayEquals(where, solve(first), a.execute(first, new int[first.getRows()]));
+                        assertArrayEquals(where, solve(second), b.execute(second, new int[second.getRows()]));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            callers.shutdown();
+            pool.shutdown();
+        }
+    }
+
+    private static int[] solve(SparseCostMatrix costs) {
+        return new SparseAssignment().execute(costs, new int[costs.getRows()]);
+    }
+
+    /**
+     * Clusters of workers and jobs with random costs inside a cluster, a
+     * few workers left without any job.
+     */
+    private static SparseCostMatrix clusters(Random random, int clusters) {
+        int size = 6;
+        SparseCostMatrix costs = new SparseCostMatrix();
+        costs.reset(clusters * size, clusters * size);
+        for (int w = 0; w < clusters * size; w++) {
+            int cluster = w / size;
+            for (int j = cluster * size; j < (cluster + 1) * size; j++) {
+                if (random.nextDouble() < 0.5) {
+                    costs.add(w, j, random.nextInt(100));
+                }
+            }
+        }
+        return costs;
+    }
+}
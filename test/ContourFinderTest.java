@@ -0,0 +1,134 @@
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The finder, sequential and split in bands, gives the external contours
+ * of {@link Imgproc#findContours} on the whole image, sorted by center
+ * then radius.
+ */
+public class ContourFinderTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        nu.pattern.OpenCV.loadLocally();
+    }
+
+    @Test
+    public void bandsFindTheContoursOfTheWholeImage() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int bands : new int[]{1, 2, 3, 7, 16}) {
+                ContourFinder finder = bands == 1 ? new ContourFinder() : new ContourFinder(pool, bands);
+                for (int seed = 0; seed < 20; seed++) {
+                    Mat mask = mask(new Random(seed), bands);
+                    assertSameCircles("bands " + bands + " seed " + seed, reference(mask), finder, mask);
+                    mask.release();
+                }
+                finder.release();
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void emptyImageHasNoContour() {
+        Mat mask = Mat.zeros(HEIGHT, WIDTH, CvType.CV_8UC1);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            assertEquals(0, new ContourFinder(pool, 4).find(mask));
+            assertEquals(0, new ContourFinder().find(mask));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Random blobs, rings holding other blobs, and shapes straddling the
+     * cuts between the bands, spanning several bands or crossing a cut
+     * twice.
+     */
+    private static Mat mask(Random random, int bands) {
+        Mat mask = Mat.zeros(HEIGHT, WIDTH, CvType.CV_8UC1);
+        Scalar white = new Scalar(255);
+        for (int k = 0; k < 15; k++) {
+            Point center = new Point(random.nextInt(WIDTH), random.nextInt(HEIGHT));
+            int radius = 2 + random.nextInt(20);
+            Imgproc.circle(mask, center, radius, white, random.nextBoolean() ? -1 : 1 + random.nextInt(2));
+        }
+        for (int b = 1; b < bands; b++) {
+            int cut = HEIGHT * b / bands;
+            int x = random.nextInt(WIDTH - 40);
+            // across the cut
+            Imgproc.rectangle(mask, new Point(x, cut - 1 - random.nextInt(5)), new Point(x + 5 + random.nextInt(30),
+                    cut + random.nextInt(5)), white, -1);
+            // a U whose arms cross the cut
+            int u = random.nextInt(WIDTH - 40);
+            Imgproc.line(mask, new Point(u, cut - 10), new Point(u, cut + 6), white, 1);
+            Imgproc.line(mask, new Point(u + 20, cut - 10), new Point(u + 20, cut + 6), white, 1);
+            Imgproc.line(mask, new Point(u, cut + 6), new Point(u + 20, cut + 6), white, 1);
+            // a ring around the cut with a blob inside, which is not external
+            Point center = new Point(20 + random.nextInt(WIDTH - 40), cut);
+            Imgproc.circle(mask, center, 12, white, 1);
+            Imgproc.circle(mask, center, 3, white, -1);
+        }
+        // a tall shape over every band and the borders of the image
+        int x = random.nextInt(WIDTH - 10);
+        Imgproc.rectangle(mask, new Point(x, 0), new Point(x + 3, HEIGHT - 1), white, -1);
+        return mask;
+    }
+
+    /**
+     * @return x, y, radius and area of the enclosing circles of the
+     * external contours, sorted as the finder sorts them
+     */
+    private static List<double[]> reference(Mat mask) {
+        List<MatOfPoint> contours = new ArrayList<>();
+        Mat hierarchy = new Mat();
+        Imgproc.findContours(mask.clone(), contours, hierarchy, Imgproc.RETR_EXTERNAL,
+                Imgproc.CHAIN_APPROX_SIMPLE);
+        List<double[]> circles = new ArrayList<>();
+        MatOfPoint2f points = new MatOfPoint2f();
+        Point center = new Point();
+        float[] radius = new float[1];
+        for (MatOfPoint contour : contours) {
+            contour.convertTo(points, CvType.CV_32F);
+            Imgproc.minEnclosingCircle(points, center, radius);
+            circles.add(new double[]{center.x, center.y, radius[0], Imgproc.contourArea(contour)});
+        }
+        circles.sort(Comparator.<double[]>comparingDouble(c -> c[1]).thenComparingDouble(c -> c[0])
+                .thenComparingDouble(c -> c[2]));
+        return circles;
+    }
+
+    private static void assertSameCircles(String where, List<double[]> expected, ContourFinder finder, Mat mask) {
+        int found = finder.find(mask);
+        assertEquals(where + ": contours", expected.size(), found);
+        for (int k = 0; k < found; k++) {
+            double[] e = expected.get(k);
+            String circle = where + " circle " + k;
+            assertEquals(circle + ": x", e[0], finder.getX(k), 0);
+            assertEquals(circle + ": y", e[1], finder.getY(k), 0);
+            assertEquals(circle + ": radius", e[2], finder.getRadius(k), 0);
+            assertEquals(circle + ": area", e[3], finder.getArea(k), 0);
+        }
+    }
+}
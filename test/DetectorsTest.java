@@ -0,0 +1,122 @@
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Mat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DetectorsTest {
+
+    private static ArrayList<Mat> frames;
+
+    @BeforeClass
+    public static void generateFrames() {
+        nu.pattern.OpenCV.loadLocally();
+        frames = DetectorsBenchmark.generate(30, 960, 540);
+    }
+
+    @AfterClass
+    public static void releaseFrames() {
+        for (Mat frame : frames) {
+            frame.release();
+        }
+    }
+
+    @Test
+    public void resetLearnsTheBackgroundLikeANewDetector() {
+        for (double scale : new double[]{1, 0.5}) {
+            Detectors used = new Detectors();
+            used.setScale(scale);
+            detect(used, 0, 20);
+            // same scale, only the background is forgotten
+            used.setScale(scale);
+            Detectors fresh = new Detectors();
+            fresh.setScale(scale);
+            assertSameDetections("scale " + scale, detect(fresh, 20, 40), detect(used, 20, 40));
+            used.close();
+            fresh.close();
+        }
+    }
+
+    @Test
+    public void aNewRegionLearnsTheBackgroundLikeANewDetector() {
+        Detectors used = new Detectors();
+        detect(used, 0, 20);
+        // the region takes the model of the whole frame
+        used.addRegion(Detectors.getLimit("540p"));
+        Detectors fresh = new Detectors();
+        fresh.addRegion(Detectors.getLimit("540p"));
+        assertSameDetections("region", detect(fresh, 20, 40), detect(used, 20, 40));
+        used.close();
+        fresh.close();
+    }
+
+    @Test
+    public void framesInOtherMatsAreNotMistakenForTheLastOne() {
+        Detectors reused = new Detectors();
+        reused.addRegion(Detectors.getLimit("540p"));
+        Detectors swapped = new Detectors();
+        swapped.addRegion(Detectors.getLimit("540p"));
+        Mat work = new Mat();
+        Mat[] works = {new Mat(), new Mat()};
+        List<DetectionBatch> expected = new ArrayList<>();
+        List<DetectionBatch> actual = new ArrayList<>();
+        for (int f = 0; f < 40; f++) {
+            frames.get(f).copyTo(work);
+            expected.add(new DetectionBatch());
+            reused.detect(work, expected.get(f));
+            // a Mat per frame, and the data of one Mat reallocated
+            Mat other = works[f % 2];
+            if (f % 5 == 0) {
+                other.release();
+            }
+            frames.get(f).copyTo(other);
+            actual.add(new DetectionBatch());
+            swapped.detect(other, actual.get(f));
+        }
+        assertSameDetections("swapped", expected, actual);
+        work.release();
+        works[0].release();
+        works[1].release();
+        reused.close();
+        swapped.close();
+    }
+
+    /**
+     * @return the detections of the frames from first to last, exclusive,
+     * each frame copied in a working frame the detector draws on
+     */
+    private static List<DetectionBatch> detect(Detectors detectors, int first, int last) {
+        List<DetectionBatch> batches = new ArrayList<>();
+        Mat work = new Mat();
+        for (int f = first; f < last; f++) {
+            frames.get(f).copyTo(work);
+            DetectionBatch batch = new DetectionBatch();
+            detectors.detect(work, batch);
+            batches.add(batch);
+        }
+        work.release();
+        return batches;
+    }
+
+    private static void assertSameDetections(String where, List<DetectionBatch> expected,
+                                             List<DetectionBatch> actual) {
+        int total = 0;
+        for (int f = 0; f < expected.size(); f++) {
+            DetectionBatch e = expected.get(f), a = actual.get(f);
+            assertEquals(where + " frame " + f, e.size(), a.size());
+            for (int k = 0; k < e.size(); k++) {
+                assertEquals(where + " frame " + f, e.getX(k), a.getX(k), 0);
+                assertEquals(where + " frame " + f, e.getY(k), a.getY(k), 0);
+                assertEquals(where + " frame " + f, e.getRadius(k), a.getRadius(k), 0);
+            }
+            total += e.size();
+        }
+        // the frames must give blobs for the comparison to mean anything
+        assertTrue(where, total > 0);
+    }
+}
@@ -0,0 +1,147 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FrameSchedulerTest {
+
+    private static final long MS = 1000000;
+
+    /**
+     * A stream processed with a simulated clock: a detected frame takes
+     * detectNanos, a predicted one 1 ms, and the loop waits for the
+     * deadline of the next frame.
+     */
+    private static final class Loop {
+        final FrameScheduler scheduler;
+        long now;
+
+        Loop(FrameScheduler scheduler) {
+            this.scheduler = scheduler;
+            scheduler.start(now);
+        }
+
+        /**
+         * @return number of frames detected among the frames processed
+         */
+        int run(int frames, long detectNanos) {
+            int detected = 0;
+            for (int k = 0; k < frames; k++) {
+                now += scheduler.lateFrames(now) * MS;
+                if (scheduler.nextFrameDetected()) {
+                    detected++;
+                    now += detectNanos;
+                    scheduler.processed(detectNanos);
+                } else {
+                    now += MS;
+                }
+                now += scheduler.delay(now);
+            }
+            return detected;
+        }
+    }
+
+    @Test
+    public void framesOnTimeAreAllDetected() {
+        FrameScheduler scheduler = new FrameScheduler(25, 8);
+        Loop loop = new Loop(scheduler);
+        assertEquals(100, loop.run(100, 10 * MS));
+        assertEquals(1, scheduler.getStride());
+        assertEquals(0, scheduler.getDropped());
+        assertEquals(0, scheduler.getPredicted());
+        // the loop waited for every deadline
+        assertEquals(100 * scheduler.getPeriodNanos(), loop.now);
+    }
+
+    @Test
+    public void strideGrowsUnderSustainedOverload() {
+        // 100 ms per detection at 25 fps, 40 ms per frame: 3 frames of
+        // 36 ms each
+        FrameScheduler scheduler = new FrameScheduler(25, 8);
+        Loop loop = new Loop(scheduler);
+        loop.run(30, 100 * MS);
+        assertEquals(3, scheduler.getStride());
+        assertEquals(100 * MS, scheduler.getAverageNanos(), 1);
+
+        // the stream keeps the pace of the source, one frame in 3 being
+        // detected; as a detection takes 2.5 periods, the frame after it
+        // is given up and the next one predicted
+        long start = loop.now;
+        long frames = scheduler.getDetected() + scheduler.getPredicted();
+        long detected = scheduler.getDetected();
+        loop.run(40, 100 * MS);
+        frames = scheduler.getDetected() + scheduler.getPredicted() - frames;
+        detected = scheduler.getDetected() - detected;
+        assertEquals(frames, 3 * detected);
+        assertEquals(frames * scheduler.getPeriodNanos(), loop.now - start, scheduler.getPeriodNanos());
+    }
+
+    @Test
+    public void strideRecoversAfterTheOverload() {
+        FrameScheduler scheduler = new FrameScheduler(25, 8);
+        Loop loop = new Loop(scheduler);
+        loop.run(60, 100 * MS);
+        assertEquals(3, scheduler.getStride());
+
+        // the average decays by 10% per detected frame
+        loop.run(60, 10 * MS);
+        assertEquals(1, scheduler.getStride());
+        assertEquals(30, loop.run(30, 10 * MS));
+    }
+
+    @Test
+    public void strideIsCappedAtMaxStride() {
+        FrameScheduler scheduler = new FrameScheduler(25, 4);
+        Loop loop = new Loop(scheduler);
+        loop.run(40, 1000 * MS);
+        assertEquals(4, scheduler.getStride());
+        // frames are still given up, the stream cannot keep up
+        assertTrue(scheduler.getDropped() > 0);
+    }
+
+    @Test
+    public void lateFramesAreGivenUp() {
+        FrameScheduler scheduler = new FrameScheduler(10, 8);
+        long period = scheduler.getPeriodNanos();
+        assertEquals(100 * MS, period);
+        scheduler.start(0);
+
+        // less than a period late: the frame is still processed
+        assertEquals(0, scheduler.lateFrames(period - 1));
+        // 3.5 periods late: the 3 oldest frames are given up
+        assertEquals(3, scheduler.lateFrames(3 * period + period / 2));
+        assertEquals(3, scheduler.getDropped());
+        assertEquals(3, scheduler.getPredicted());
+        assertEquals(0, scheduler.delay(3 * period + period / 2));
+
+        // the next frame is due at 4 periods
+        assertTrue(scheduler.nextFrameDetected());
+        assertEquals(period / 2, scheduler.delay(3 * period + period / 2));
+        assertEquals(0, scheduler.lateFrames(4 * period));
+        assertEquals(0, scheduler.delay(5 * period));
+        assertEquals(1, scheduler.getDetected());
+    }
+
+    @Test
+    public void deadlinesFollowThePeriodFromTheStart() {
+        FrameScheduler scheduler = new FrameScheduler(0, 1);
+        long period = scheduler.getPeriodNanos();
+        assertEquals(1000000000L / 30, period);
+        long start = 12345 * MS;
+        scheduler.start(start);
+        assertEquals(0, scheduler.delay(start));
+        for (int k = 1; k <= 5; k++) {
+            assertTrue(scheduler.nextFrameDetected());
+            assertEquals(k * period, scheduler.delay(start));
+        }
+        // a restart starts the deadlines again
+        scheduler.start(start + period);
+        assertFalse(scheduler.delay(start + period) > 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxStrideMustBePositive() {
+        new FrameScheduler(30, 0);
+    }
+}
@@ -0,0 +1,148 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GatesTest {
+
+    private static DetectionBatch detections(double... xy) {
+        DetectionBatch detections = new DetectionBatch();
+        for (int k = 0; k < xy.length; k += 2) {
+            detections.add(xy[k], xy[k + 1]);
+        }
+        return detections;
+    }
+
+    @Test
+    public void distanceGateAcceptsUpToTwiceTheThreshold() {
+        TrackStore store = new TrackStore();
+        int track = store.add(0, 100, 100);
+        DistanceGate gate = new DistanceGate(10);
+        DetectionBatch detections = detections(120, 100, 120.001, 100, 112, 116, 112, 116.001);
+
+        assertEquals(20, gate.getSearchRadius(store, track), 0);
+        assertTrue(gate.accept(store, track, detections, 0));
+        assertFalse(gate.accept(store, track, detections, 1));
+        // 12, 16 is 20 away
+        assertTrue(gate.accept(store, track, detections, 2));
+        assertFalse(gate.accept(store, track, detections, 3));
+    }
+
+    @Test
+    public void mahalanobisGateAcceptsUpToTheThreshold() {
+        // a new track has P = 3 I and r = 1, so S = 4 I and d2 = |e|^2 / 4
+        TrackStore store = new TrackStore();
+        int track = store.add(0, 100, 100);
+        MahalanobisGate gate = new MahalanobisGate(9);
+        DetectionBatch detections = detections(106, 100, 106.001, 100, 100, 94, 100, 93.999);
+
+        assertEquals(6, gate.getSearchRadius(store, track), 1e-12);
+        assertEquals(9, gate.distance2(store, track, detections, 0), 0);
+        assertTrue(gate.accept(store, track, detections, 0));
+        assertEquals(9, gate.cost(store, track, detections, 0), 0);
+        assertFalse(gate.accept(store, track, detections, 1));
+        assertEquals(CostFunction.REJECT, gate.cost(store, track, detections, 1), 0);
+        assertTrue(gate.accept(store, track, detections, 2));
+        assertFalse(gate.accept(store, track, detections, 3));
+    }
+
+    @Test
+    public void combinedGateAcceptsWhatBothAccept() {
+        TrackStore store = new TrackStore();
+        int track = store.add(0, 100, 100, 5, 1);
+        Gate gate = new DistanceGate(10).and(new ClassGate());
+        DetectionBatch detections = new DetectionBatch();
+        detections.add(110, 100, 5, 0, 1, 1);
+        detections.add(110, 100, 5, 0, 1, 2);
+        detections.add(130, 100, 5, 0, 1, 1);
+
+        assertEquals(20, gate.getSearchRadius(store, track), 0);
+        assertTrue(gate.accept(store, track, detections, 0));
+        assertFalse(gate.accept(store, track, detections, 1));
+        assertFalse(gate.accept(store, track, detections, 2));
+    }
+
+    @Test
+    public void classGateRejectsOtherClasses() {
+        TrackStore store = new TrackStore();
+        int car = store.add(0, 0, 0, 5, 1);
+        int unknown = store.add(1, 0, 0, 5, DetectionBatch.NO_CLASS);
+        DetectionBatch detections = new DetectionBatch();
+        detections.add(0, 0, 5, 0, 1, 1);
+        detections.add(0, 0, 5, 0, 1, 2);
+        detections.add(0, 0, 5, 0, 1, DetectionBatch.NO_CLASS);
+
+        ClassGate gate = new ClassGate();
+        assertEquals(Double.POSITIVE_INFINITY, gate.getSearchRadius(store, car), 0);
+        assertTrue(gate.accept(store, car, detections, 0));
+        assertFalse(gate.accept(store, car, detections, 1));
+        assertTrue(gate.accept(store, car, detections, 2));
+        assertTrue(gate.accept(store, unknown, detections, 1));
+
+        // class 2 detections may go to class 1 tracks, not the other way
+        boolean[][] compatible = new boolean[3][3];
+        compatible[1][2] = true;
+        ClassGate mask = new ClassGate(compatible);
+        int truck = store.add(2, 0, 0, 5, 2);
+        assertTrue(mask.accept(store, car, detections, 1));
+        assertFalse(mask.accept(store, truck, detections, 0));
+    }
+
+    @Test
+    public void iouCostOfDisjointAndOverlappingCircles() {
+        TrackStore store = new TrackStore();
+        int track = store.add(0, 0, 0, 2, DetectionBatch.NO_CLASS);
+        DetectionBatch detections = new DetectionBatch();
+        detections.add(5, 0, 2, 0);     // disjoint
+        detections.add(4, 0, 2, 0);     // touching
+        detections.add(0, 0, 2, 0);     // same circle
+        detections.add(0, 0, 1, 0);     // inside
+        detections.add(2, 0, 2, 0);     // overlapping
+        detections.add(2, 0);           // no radius
+
+        IouCost cost = new IouCost();
+        assertEquals(1, cost.cost(store, track, detections, 0), 0);
+        assertEquals(1, cost.cost(store, track, detections, 1), 0);
+        assertEquals(0, cost.cost(store, track, detections, 2), 0);
+        assertEquals(0.75, cost.cost(store, track, detections, 3), 1e-12);
+        // lens of two unit circles 1 apart scaled by 2: 2 (2pi/3 - sqrt(3)/2) r^2
+        double lens = 4 * (2 * Math.PI / 3 - Math.sqrt(3) / 2);
+        double iou = lens / (8 * Math.PI - lens);
+        assertEquals(1 - iou, cost.cost(store, track, detections, 4), 1e-12);
+        assertEquals(1, cost.cost(store, track, detections, 5), 0);
+
+        IouCost strict = new IouCost(0.3);
+        assertEquals(CostFunction.REJECT, strict.cost(store, track, detections, 0), 0);
+        assertEquals(CostFunction.REJECT, strict.cost(store, track, detections, 4), 0);
+        assertEquals(CostFunction.REJECT, strict.cost(store, track, detections, 3), 0);
+        assertEquals(0, strict.cost(store, track, detections, 2), 0);
+    }
+
+    @Test
+    public void mahalanobisGateNeedsTheUnassignedCost() {
+        // the pair is in the gate, but its cost is above the default
+        // unassigned cost, distThresh, so the track is left unassigned
+        // and the detection starts a second track
+        Tracker tracker = mahalanobisTracker();
+        tracker.Update(detections(100, 100));
+        tracker.Update(detections(104, 100));
+        assertEquals(2, tracker.getTracks().size());
+        assertEquals(1, tracker.getTracks().get(0).getSkippedFrames());
+
+        tracker = mahalanobisTracker();
+        tracker.setUnassignedCost(MahalanobisGate.CHI2_99);
+        tracker.Update(detections(100, 100));
+        tracker.Update(detections(104, 100));
+        assertEquals(1, tracker.getTracks().size());
+        assertEquals(0, tracker.getTracks().get(0).getSkippedFrames());
+    }
+
+    private static Tracker mahalanobisTracker() {
+        Tracker tracker = new Tracker(1, 5, 5, 0);
+        MahalanobisGate gate = new MahalanobisGate();
+        tracker.setGate(gate);
+        tracker.setCostFunction(gate);
+        return tracker;
+    }
+}
@@ -0,0 +1,192 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class HistoryStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * @return tracks first, first + 1, ... at x = id + frame, y = id
+     */
+    private static TrackStore tracks(int first, int n, long frame) {
+        TrackStore store = new TrackStore(n);
+        for (int k = 0; k < n; k++) {
+            store.add(first + k, first + k + frame, first + k);
+        }
+        return store;
+    }
+
+    private static List<long[]> query(HistoryReader reader, int trackId, long fromFrame, long toFrame) {
+        List<long[]> records = new ArrayList<>();
+        reader.query(trackId, fromFrame, toFrame, (id, frame, x, y, vx, vy) -> records.add(new long[]{id, frame,
+                (long) x}));
+        return records;
+    }
+
+    @Test
+    public void queryOfATrackSpansTheSegments() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (HistoryStore store = new HistoryStore(directory, 8, 0, 0)) {
+            for (long frame = 1; frame <= 20; frame++) {
+                store.append(frame, tracks(0, 3, frame));
+            }
+            // 2 batches of 3 per segment of 8
+            assertEquals(10, store.getSegments());
+
+            try (HistoryReader reader = new HistoryReader(directory)) {
+                List<long[]> records = query(reader, 1, 5, 15);
+                assertEquals(11, records.size());
+                for (int k = 0; k < records.size(); k++) {
+                    long frame = 5 + k;
+                    assertEquals(1, records.get(k)[0]);
+                    assertEquals(frame, records.get(k)[1]);
+                    assertEquals(1 + frame, records.get(k)[2]);
+                }
+                // every track of the frames 6 to 7, which straddle a roll
+                assertEquals(6, reader.query(6, 7, (id, frame, x, y, vx, vy) -> { }));
+                assertEquals(0, query(reader, 3, 1, 20).size());
+            }
+        }
+    }
+
+    @Test
+    public void retentionKeepsAtMostMaxBytes() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        long segmentBytes;
+        try (HistoryStore probe = new HistoryStore(folder.newFolder().toPath(), 8, 0, 0)) {
+            segmentBytes = HistoryStore.list(probe.getDirectory()).get(0).toFile().length();
+        }
+        try (HistoryStore store = new HistoryStore(directory, 8, 3 * segmentBytes, 0)) {
+            for (long frame = 1; frame <= 40; frame++) {
+                store.append(frame, tracks(0, 4, frame));
+            }
+            assertEquals(3, store.getSegments());
+            assertEquals(3, HistoryStore.list(directory).size());
+            try (HistoryReader reader = new HistoryReader(directory)) {
+                // 2 frames per segment: the frames 35 to 40 are left
+                assertEquals(0, query(reader, 0, 1, 34).size());
+                assertEquals(6, query(reader, 0, 1, 40).size());
+            }
+        }
+    }
+
+    @Test
+    public void retentionKeepsAtMostMaxAgeFrames() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (HistoryStore store = new HistoryStore(directory, 8, 0, 5)) {
+            for (long frame = 1; frame <= 40; frame++) {
+                store.append(frame, tracks(0, 4, frame));
+            }
+            try (HistoryReader reader = new HistoryReader(directory)) {
+                List<long[]> records = query(reader, 0, 1, 40);
+                // the last segment was opened at frame 39, the segments
+                // ending before frame 39 - 5 are gone: the frames 33 to 40
+                // are left
+                assertEquals(8, records.size());
+                assertEquals(33, records.get(0)[1]);
+                assertEquals(40, records.get(7)[1]);
+            }
+        }
+    }
+
+    @Test
+    public void reopenedStoreShiftsTheFramesOfTheNewRun() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (HistoryStore store = new HistoryStore(directory, 8, 0, 0)) {
+            for (long frame = 1; frame <= 10; frame++) {
+                store.append(frame, tracks(0, 2, frame));
+            }
+        }
+        // the tracker restarted without its snapshot counts from 1 again
+        try (HistoryStore store = new HistoryStore(directory, 8, 0, 0)) {
+            for (long frame = 1; frame <= 5; frame++) {
+                store.append(frame, tracks(100, 2, frame));
+            }
+            assertEquals(10, store.getFrameOffset());
+        }
+        try (HistoryReader reader = new HistoryReader(directory)) {
+            assertEquals(10, query(reader, 0, 1, 10).size());
+            List<long[]> records = query(reader, 100, 1, 100);
+            assertEquals(5, records.size());
+            for (int k = 0; k < records.size(); k++) {
+                assertEquals(11 + k, records.get(k)[1]);
+                // the position is the one of the frame of the run
+                assertEquals(100 + 1 + k, records.get(k)[2]);
+            }
+        }
+        // a run going on after the stored frames keeps its frames
+        try (HistoryStore store = new HistoryStore(directory, 8, 0, 0)) {
+            store.append(20, tracks(0, 2, 20));
+            assertEquals(0, store.getFrameOffset());
+        }
+    }
+
+    @Test
+    public void readersOnlySeeWholeBatches() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        int writers = 4;
+        int batches = 2000;
+        int n = 5;
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        try (HistoryStore store = new HistoryStore(directory, 64, 0, 0);
+             HistoryReader reader = new HistoryReader(directory)) {
+            List<Thread> threads = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                TrackStore tracks = tracks(w * n, n, 1);
+                Thread thread = new Thread(() -> {
+                    try {
+                        for (int b = 0; b < batches; b++) {
+                            store.append(1, tracks);
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            AtomicBoolean writing = new AtomicBoolean(true);
+            Thread stopper = new Thread(() -> {
+                for (Thread thread : threads) {
+                    try {
+                        thread.join();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                writing.set(false);
+            });
+            stopper.start();
+            long[] perWriter = new long[writers];
+            boolean last = false;
+            while (!last) {
+                last = !writing.get();
+                reader.refresh();
+                Arrays.fill(perWriter, 0);
+                long total = reader.query(1, 1, (id, frame, x, y, vx, vy) -> perWriter[id / n]++);
+                assertEquals(0, total % n);
+                for (int w = 0; w < writers; w++) {
+                    assertEquals("writer " + w + " in " + total, 0, perWriter[w] % n);
+                }
+                if (last) {
+                    assertEquals((long) writers * batches * n, total);
+                }
+            }
+            stopper.join();
+        }
+        assertNull(failure.get());
+    }
+}
@@ -0,0 +1,160 @@
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+public class KalmanFilterTest {
+
+    @Test
+    public void predictAndCorrectDoNotAllocate() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled());
+        long thread = Thread.currentThread().getId();
+
+        KalmanFilter filter = new KalmanFilter();
+        // warm up, so the loop measured runs compiled
+        run(filter, 200000);
+
+        // bytes allocated by reading the counter itself
+        long overhead = hotspot.getThreadAllocatedBytes(thread);
+        overhead = hotspot.getThreadAllocatedBytes(thread) - overhead;
+
+        long before = hotspot.getThreadAllocatedBytes(thread);
+        run(filter, 100000);
+        long allocated = hotspot.getThreadAllocatedBytes(thread) - before - overhead;
+        assertEquals("bytes allocated by predict and correct", 0, allocated);
+    }
+
+    @Test
+    public void correctConvergesToTheObservation() {
+        KalmanFilter filter = new KalmanFilter();
+        for (int k = 0; k < 100; k++) {
+            filter.predict();
+            filter.correct(100, 50, true);
+        }
+        assertEquals(100, filter.getX(), 0);
+        assertEquals(50, filter.getY(), 0);
+        assertEquals(100, filter.getLastX(), 0);
+        assertEquals(50, filter.getLastY(), 0);
+    }
+
+    @Test
+    public void correctWithoutDetectionKeepsThePrediction() {
+        KalmanFilter filter = new KalmanFilter();
+        filter.correct(10, 20, true);
+        double x = filter.getX(), y = filter.getY();
+        filter.correct(500, 500, false);
+        assertEquals(x, filter.getX(), 0);
+        assertEquals(y, filter.getY(), 0);
+    }
+
+    @Test
+    public void replayStaysCloseToTheBaselineFilter() {
+        // a track crossing a 640x480 frame at (3, -2) pixels per frame,
+        // detected with a pixel of noise
+        Random random = new Random(7);
+        KalmanFilter filter = new KalmanFilter();
+        BaselineFilter baseline = new BaselineFilter();
+        for (int k = 1; k <= 200; k++) {
+            double bx = Math.round(40 + 3 * k + random.nextGaussian());
+            double by = Math.round(440 - 2 * k + random.nextGaussian());
+            filter.predict();
+            filter.correct(bx, by, true);
+            baseline.predict();
+            baseline.correct(bx, by);
+            // the baseline transition adds dt * y to x, up to 0.005 * 480
+            // = 2.4 pixels a frame, which its correction mostly takes back
+            String where = "frame " + k;
+            assertEquals(where, baseline.u[0][0], filter.getX(), 2);
+            assertEquals(where, baseline.u[1][0], filter.getY(), 2);
+        }
+    }
+
+    private static void run(KalmanFilter filter, int steps) {
+        for (int k = 0; k < steps; k++) {
+            filter.predict();
+            filter.correct(k % 640, k % 480, true);
+        }
+    }
+
+    /**
+     * The filter before the constant velocity model, the EJML calls of its
+     * predict() and correct() written over plain arrays: the state is the
+     * position only and F = [[1, dt], [0, 1]] applies to it.
+     */
+    private static final class BaselineFilter {
+        final double dt = 0.005;
+        final double[][] A = {{1, 0}, {0, 1}};
+        final double[][] F = {{1, dt}, {0, 1}};
+        final double[][] Q = {{1, 0}, {0, 1}};
+        final double[][] R = {{1, 0}, {0, 1}};
+        double[][] u = {{0}, {0}};
+        double[][] P = {{3, 0}, {0, 3}};
+
+        void predict() {
+            u = round(mult(F, u));
+            P = plus(mult(F, mult(P, transpose(F))), Q, 1);
+        }
+
+        void correct(double bx, double by) {
+            double[][] b = {{bx}, {by}};
+            double[][] C = plus(mult(mult(A, P), transpose(A)), R, 1);
+            double[][] K = mult(P, mult(transpose(A), invert(C)));
+            u = round(plus(u, mult(K, plus(b, mult(A, u), -1)), 1));
+            P = plus(P, mult(K, mult(C, transpose(K))), -1);
+        }
+
+        static double[][] mult(double[][] a, double[][] b) {
+            double[][] c = new double[a.length][b[0].length];
+            for (int i = 0; i < a.length; i++) {
+                for (int j = 0; j < b[0].length; j++) {
+                    for (int k = 0; k < b.length; k++) {
+                        c[i][j] += a[i][k] * b[k][j];
+                    }
+                }
+            }
+            return c;
+        }
+
+        /** @return a + sign * b */
+        static double[][] plus(double[][] a, double[][] b, int sign) {
+            double[][] c = new double[a.length][a[0].length];
+            for (int i = 0; i < a.length; i++) {
+                for (int j = 0; j < a[0].length; j++) {
+                    c[i][j] = a[i][j] + sign * b[i][j];
+                }
+            }
+            return c;
+        }
+
+        static double[][] transpose(double[][] a) {
+            double[][] t = new double[a[0].length][a.length];
+            for (int i = 0; i < a.length; i++) {
+                for (int j = 0; j < a[0].length; j++) {
+                    t[j][i] = a[i][j];
+                }
+            }
+            return t;
+        }
+
+        static double[][] invert(double[][] a) {
+            double det = a[0][0] * a[1][1] - a[0][1] * a[1][0];
+            return new double[][]{{a[1][1] / det, -a[0][1] / det}, {-a[1][0] / det, a[0][0] / det}};
+        }
+
+        static double[][] round(double[][] a) {
+            for (double[] row : a) {
+                for (int j = 0; j < row.length; j++) {
+                    row[j] = Math.round(row[j]);
+                }
+            }
+            return a;
+        }
+    }
+}
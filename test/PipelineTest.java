@@ -0,0 +1,60 @@
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class PipelineTest {
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        nu.pattern.OpenCV.loadLocally();
+    }
+
+    @Test
+    public void emptyFramesAgeTheTracksUntilTheyExpire() throws InterruptedException {
+        int maxFramesToSkip = 3;
+        int frames = 10;
+        int[] read = {0};
+        Pipeline.FrameSource source = image -> {
+            if (read[0] == frames) {
+                return false;
+            }
+            // the pixels hold the index of the frame
+            new Mat(8, 8, CvType.CV_8UC1, new Scalar(read[0]++)).copyTo(image);
+            return true;
+        };
+        // one blob in the first frame, none afterwards
+        Detectors detectors = new Detectors() {
+            @Override
+            public void detect(Mat frame, DetectionBatch detections) {
+                detections.clear();
+                if (frame.get(0, 0)[0] == 0) {
+                    detections.add(4, 4);
+                }
+            }
+        };
+        List<Integer> tracks = new ArrayList<>();
+        Pipeline.FrameSink sink = frame -> {
+            tracks.add(frame.getTracks().size());
+            frame.getImage().release();
+        };
+        Tracker tracker = new Tracker(10, maxFramesToSkip, 5, 0);
+        Pipeline pipeline = new Pipeline(source, detectors, tracker, sink, 2, Backpressure.BLOCK, Backpressure.BLOCK,
+                Backpressure.BLOCK);
+        pipeline.start();
+        pipeline.awaitTermination();
+
+        assertEquals(frames, tracks.size());
+        // the track coasts through maxFramesToSkip empty frames, then expires
+        for (int k = 0; k < frames; k++) {
+            assertEquals("frame " + k, k <= maxFramesToSkip ? 1 : 0, (int) tracks.get(k));
+        }
+        assertEquals(0, tracker.getTracks().size());
+    }
+}
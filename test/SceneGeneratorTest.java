@@ -0,0 +1,56 @@
+import org.junit.Test;
+import org.opencv.core.Point;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class SceneGeneratorTest {
+
+    private static SceneGenerator scene(long seed) {
+        SceneGenerator scene = new SceneGenerator(seed, 50, 1920, 1080, 30);
+        scene.setSpeed(4);
+        scene.setNoise(2);
+        scene.setMissRate(0.1);
+        scene.setFalseAlarms(3);
+        scene.setDeathRate(0.01);
+        scene.setTurnRate(0.05);
+        scene.setOcclusion(0.02, 5);
+        scene.balanceBirthRate();
+        return scene;
+    }
+
+    @Test
+    public void sameSeedGivesTheSameScene() {
+        SceneGenerator a = scene(42);
+        SceneGenerator b = scene(42);
+        for (int frame = 1; frame <= 300; frame++) {
+            ArrayList<Point> expected = a.nextFrame();
+            ArrayList<Point> actual = b.nextFrame();
+            assertEquals("frame " + frame, expected.size(), actual.size());
+            for (int k = 0; k < expected.size(); k++) {
+                assertEquals("frame " + frame + " detection " + k, expected.get(k).x, actual.get(k).x, 0);
+                assertEquals("frame " + frame + " detection " + k, expected.get(k).y, actual.get(k).y, 0);
+            }
+            assertEquals(a.size(), b.size());
+        }
+        assertEquals(300, b.getFrame());
+        assertEquals(a.timestampNanos(300), b.timestampNanos(300));
+    }
+
+    @Test
+    public void batchesAreTheFramesOneByOne() {
+        SceneGenerator a = scene(7);
+        SceneGenerator b = scene(7);
+        ArrayList<ArrayList<Point>> frames = a.nextFrames(50);
+        for (ArrayList<Point> frame : frames) {
+            assertEquals(frame, b.nextFrame());
+        }
+    }
+
+    @Test
+    public void otherSeedGivesAnotherScene() {
+        assertNotEquals(scene(1).nextFrames(10), scene(2).nextFrames(10));
+    }
+}
@@ -0,0 +1,148 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class SnapshotFileTest {
+
+    // layout of the file, see SnapshotFile
+    private static final int HEADER = 16;
+    private static final int SLOT_HEADER = 16;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void restoredTrackerUpdatesLikeTheOriginal() throws IOException {
+        Random random = new Random(7);
+        Tracker tracker = new Tracker(20, 3, 6, 0);
+        for (int frame = 0; frame < 30; frame++) {
+            tracker.Update(detections(random, frame));
+        }
+        Path path = folder.getRoot().toPath().resolve("tracker.snap");
+        try (SnapshotFile file = new SnapshotFile(path, 1 << 16)) {
+            file.write(tracker.snapshot());
+        }
+        Tracker restored = new Tracker(20, 3, 6, 0);
+        restored.restore(SnapshotFile.read(path));
+        assertSameTracks("restored", tracker, restored);
+
+        for (int frame = 30; frame < 60; frame++) {
+            DetectionBatch detections = detections(random, frame);
+            tracker.Update(detections);
+            restored.Update(detections);
+            assertSameTracks("frame " + frame, tracker, restored);
+        }
+    }
+
+    @Test
+    public void corruptedNewerSlotFallsBackToTheOlder() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("tracker.snap");
+        int slotSize = 1 << 12;
+        try (SnapshotFile file = new SnapshotFile(path, slotSize)) {
+            file.write(snapshot(10, 3));
+            file.write(snapshot(11, 3));
+            assertEquals(2, file.getSequence());
+        }
+        assertEquals(11, SnapshotFile.read(path).getFrame());
+
+        // the second snapshot went to slot 0, flip a byte of its payload
+        corrupt(path, HEADER + SLOT_HEADER + 5);
+        TrackerSnapshot snapshot = SnapshotFile.read(path);
+        assertNotNull(snapshot);
+        assertEquals(10, snapshot.getFrame());
+    }
+
+    @Test
+    public void snapshotLargerThanTheSlotGrowsTheFile() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("tracker.snap");
+        int slotSize = 256;
+        try (SnapshotFile file = new SnapshotFile(path, slotSize)) {
+            file.write(snapshot(1, 1));
+            TrackerSnapshot large = snapshot(2, 50);
+            assertTrue(large.byteSize() > slotSize);
+            file.write(large);
+            assertEquals(2, file.getSequence());
+            assertEquals(2, file.read().getFrame());
+            assertEquals(50, file.read().getTrackCount());
+        }
+        long size = Files.size(path);
+        assertTrue(size > HEADER + 2 * slotSize);
+        assertEquals(2, SnapshotFile.read(path).getFrame());
+
+        // the previous snapshot was copied in the other slot of the new
+        // file, slot 1, the new one is in slot 0
+        corrupt(path, HEADER + SLOT_HEADER + 5);
+        assertEquals(1, SnapshotFile.read(path).getFrame());
+    }
+
+    private static TrackerSnapshot snapshot(int frames, int tracks) {
+        Tracker tracker = new Tracker(20, 3, 6, 0);
+        for (int frame = 0; frame < frames; frame++) {
+            DetectionBatch detections = new DetectionBatch();
+            for (int k = 0; k < tracks; k++) {
+                detections.add(100 * k + frame, 50);
+            }
+            tracker.Update(detections);
+        }
+        return tracker.snapshot();
+    }
+
+    private static DetectionBatch detections(Random random, int frame) {
+        DetectionBatch detections = new DetectionBatch();
+        for (int k = 0; k < 10; k++) {
+            if (random.nextDouble() < 0.9) {
+                detections.add(60 * k + 2 * frame + random.nextGaussian(), 100 + frame + random.nextGaussian());
+            }
+        }
+        if (random.nextDouble() < 0.3) {
+            detections.add(random.nextDouble() * 600, random.nextDouble() * 200);
+        }
+        return detections;
+    }
+
+    private static void corrupt(Path path, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, position);
+            b.put(0, (byte) ~b.get(0));
+            b.rewind();
+            channel.write(b, position);
+        }
+    }
+
+    private static void assertSameTracks(String where, Tracker expected, Tracker actual) {
+        assertEquals(where, expected.getFrame(), actual.getFrame());
+        List<Track> e = expected.getTracks();
+        List<Track> a = actual.getTracks();
+        assertEquals(where + ": tracks", e.size(), a.size());
+        for (int i = 0; i < e.size(); i++) {
+            String track = where + " track " + i;
+            assertEquals(track + ": id", e.get(i).getTrack_id(), a.get(i).getTrack_id());
+            assertEquals(track + ": x", e.get(i).getX(), a.get(i).getX(), 0);
+            assertEquals(track + ": y", e.get(i).getY(), a.get(i).getY(), 0);
+            assertEquals(track + ": vx", e.get(i).getVx(), a.get(i).getVx(), 0);
+            assertEquals(track + ": vy", e.get(i).getVy(), a.get(i).getVy(), 0);
+            assertEquals(track + ": skipped", e.get(i).getSkippedFrames(), a.get(i).getSkippedFrames());
+            TraceBuffer eTrace = e.get(i).getTrace();
+            TraceBuffer aTrace = a.get(i).getTrace();
+            assertEquals(track + ": trace", eTrace.size(), aTrace.size());
+            for (int k = 0; k < eTrace.size(); k++) {
+                assertEquals(track + ": trace x", eTrace.getX(k), aTrace.getX(k), 0);
+                assertEquals(track + ": trace time", eTrace.getTime(k), aTrace.getTime(k));
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TrackDeltaTest {
+
+    @Test
+    public void deltasOnlyListTheChangedTracks() {
+        Tracker tracker = new Tracker(10, 1, 5, 0);
+        List<TrackDelta> deltas = new ArrayList<>();
+        tracker.addListener(deltas::add);
+
+        tracker.Update(detections(10, 10, 100, 100));
+        tracker.Update(detections(11, 10));
+        tracker.Update(detections(12, 10));
+        tracker.Update(detections(13, 10, 300, 300));
+
+        assertEquals(4, deltas.size());
+        assertDelta(deltas.get(0), TrackDelta.Kind.BORN, 0, TrackDelta.Kind.BORN, 1);
+        // track 1 coasts, it is not listed
+        assertDelta(deltas.get(1), TrackDelta.Kind.UPDATED, 0);
+        // track 1 skipped more than 1 frame
+        assertDelta(deltas.get(2), TrackDelta.Kind.DELETED, 1, TrackDelta.Kind.UPDATED, 0);
+        assertDelta(deltas.get(3), TrackDelta.Kind.BORN, 2, TrackDelta.Kind.UPDATED, 0);
+        assertEquals(1, deltas.get(3).count(TrackDelta.Kind.BORN));
+
+        TrackDelta last = deltas.get(3);
+        Track track = tracker.getTracks().get(0);
+        int k = last.getKind(0) == TrackDelta.Kind.UPDATED ? 0 : 1;
+        assertEquals(track.getX(), last.getX(k), 0);
+        assertEquals(track.getY(), last.getY(k), 0);
+        assertEquals(track.getX(), last.getState(k).getX(), 0);
+    }
+
+    private static DetectionBatch detections(double... xy) {
+        DetectionBatch detections = new DetectionBatch();
+        for (int k = 0; k < xy.length; k += 2) {
+            detections.add(xy[k], xy[k + 1]);
+        }
+        return detections;
+    }
+
+    /**
+     * @param changes kind and id of the expected entries, in any order
+     */
+    private static void assertDelta(TrackDelta delta, Object... changes) {
+        assertEquals(delta.toString(), changes.length / 2, delta.size());
+        for (int c = 0; c < changes.length; c += 2) {
+            int found = 0;
+            for (int k = 0; k < delta.size(); k++) {
+                if (delta.getKind(k) == changes[c] && delta.getTrackId(k) == (Integer) changes[c + 1]) {
+                    found++;
+                }
+            }
+            assertEquals(delta + ": " + changes[c] + " " + changes[c + 1], 1, found);
+        }
+    }
+}
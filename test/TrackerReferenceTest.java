@@ -0,0 +1,289 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Property based tests of {@link Tracker#Update(DetectionBatch)}: on
+ * random scenes, with misses, false alarms, births and deaths, the tracker
+ * gives after every frame the same tracks as a naive reference. The
+ * reference tries every pair of track and detection, solves the dense
+ * assignment with one dummy detection per track, and keeps its books
+ * with a List of Integer, contains and removal by index.
+ * <p>
+ * A failure gives the seed and the frame of the scene to replay it.
+ */
+public class TrackerReferenceTest {
+
+    private static final int SCENES = 60;
+    private static final int FRAMES = 80;
+
+    @Test
+    public void updateMatchesTheReference() {
+        for (int seed = 0; seed < SCENES; seed++) {
+            checkScene(seed, false);
+        }
+    }
+
+    @Test
+    public void updateWithMaximumCardinalityMatchesTheReference() {
+        for (int seed = 0; seed < SCENES; seed++) {
+            checkScene(seed, true);
+        }
+    }
+
+    @Test
+    public void aDetectionAtTheEdgeOfTheGateIsAssigned() {
+        int distThresh = 10;
+        // a pair costs half its distance, so 20 pixels away costs distThresh
+        for (double dx : new double[]{20, 20.5}) {
+            Tracker tracker = new Tracker(distThresh, 5, 5, 0);
+            ReferenceTracker reference = new ReferenceTracker(distThresh, 5, 5);
+            for (double x : new double[]{100, 100 + dx}) {
+                DetectionBatch detections = new DetectionBatch();
+                detections.add(x, 100);
+                tracker.Update(detections);
+                reference.update(detections);
+            }
+            String where = "dx " + dx;
+            assertSameTracks(where, reference.tracks, tracker.getTracks());
+            boolean inside = dx == 20;
+            assertEquals(where, inside ? 1 : 2, tracker.getTracks().size());
+            assertEquals(where, inside ? 0 : 1, tracker.getTracks().get(0).getSkippedFrames());
+        }
+    }
+
+    @Test
+    public void tracksKeepTheirInvariants() {
+        for (int seed = 0; seed < SCENES; seed++) {
+            Random random = new Random(seed);
+            Scene scene = new Scene(random);
+            int maxFramesToSkip = random.nextInt(6);
+            Tracker tracker = new Tracker(5 + random.nextInt(40), maxFramesToSkip, 1 + random.nextInt(10), 0);
+            Set<Integer> alive = new HashSet<>();
+            int maxId = -1;
+            for (int frame = 1; frame <= FRAMES; frame++) {
+                tracker.Update(scene.next());
+                String where = "seed " + seed + " frame " + frame;
+                Set<Integer> ids = new HashSet<>();
+                int previous = -1;
+                for (Track track : tracker.getTracks()) {
+                    int id = track.getTrack_id();
+                    // the tracks stay in the order they were created
+                    assertTrue(where, id > previous);
+                    previous = id;
+                    // a track is either still alive or new, an id is never given twice
+                    assertTrue(where, alive.contains(id) || id > maxId);
+                    ids.add(id);
+                    assertTrue(where, track.getSkippedFrames() <= maxFramesToSkip);
+                    assertTrue(where, track.getTrace().size() <= track.getTrace().capacity());
+                }
+                maxId = Math.max(maxId, previous);
+                alive = ids;
+            }
+        }
+    }
+
+    private static void checkScene(int seed, boolean maximumCardinality) {
+        Random random = new Random(seed);
+        Scene scene = new Scene(random);
+        int distThresh = 5 + random.nextInt(40);
+        int maxFramesToSkip = random.nextInt(6);
+        int maxTraceLength = 1 + random.nextInt(10);
+
+        Tracker tracker = new Tracker(distThresh, maxFramesToSkip, maxTraceLength, 0);
+        ReferenceTracker reference = new ReferenceTracker(distThresh, maxFramesToSkip, maxTraceLength);
+        if (maximumCardinality) {
+            tracker.setUnassignedCost(Double.POSITIVE_INFINITY);
+            reference.unassignedCost = 1e6;
+        }
+        for (int frame = 1; frame <= FRAMES; frame++) {
+            DetectionBatch detections = scene.next();
+            tracker.Update(detections);
+            reference.update(detections);
+            assertSameTracks("seed " + seed + " frame " + frame, reference.tracks, tracker.getTracks());
+        }
+    }
+
+    private static void assertSameTracks(String where, List<Track> expected, List<Track> actual) {
+        assertEquals(where + ": tracks", expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Track e = expected.get(i);
+            Track a = actual.get(i);
+            String track = where + " track " + i;
+            assertEquals(track + ": id", e.getTrack_id(), a.getTrack_id());
+            assertEquals(track + ": x", e.getX(), a.getX(), 0);
+            assertEquals(track + ": y", e.getY(), a.getY(), 0);
+            assertEquals(track + ": vx", e.getVx(), a.getVx(), 0);
+            assertEquals(track + ": vy", e.getVy(), a.getVy(), 0);
+            assertEquals(track + ": skipped frames", e.getSkippedFrames(), a.getSkippedFrames());
+            TraceBuffer eTrace = e.getTrace();
+            TraceBuffer aTrace = a.getTrace();
+            assertEquals(track + ": trace", eTrace.size(), aTrace.size());
+            for (int k = 0; k < eTrace.size(); k++) {
+                assertEquals(track + ": trace x", eTrace.getX(k), aTrace.getX(k), 0);
+                assertEquals(track + ": trace y", eTrace.getY(k), aTrace.getY(k), 0);
+                assertEquals(track + ": trace time", eTrace.getTime(k), aTrace.getTime(k));
+            }
+        }
+    }
+
+    /**
+     * Objects moving in a random frame, detected with noise, missed at
+     * times, with false alarms; some die and others are born.
+     */
+    private static final class Scene {
+        final Random random;
+        final double width, height, noise, missRate, falseAlarms, deathRate;
+        final List<double[]> objects = new ArrayList<>();  // x, y, vx, vy
+
+        Scene(Random random) {
+            this.random = random;
+            width = 100 + random.nextInt(900);
+            height = 100 + random.nextInt(600);
+            noise = random.nextDouble() * 4;
+            missRate = random.nextDouble() * 0.3;
+            falseAlarms = random.nextDouble() * 3;
+            deathRate = random.nextDouble() * 0.05;
+            int n = 5 + random.nextInt(40);
+            for (int k = 0; k < n; k++) {
+                objects.add(newObject());
+            }
+        }
+
+        double[] newObject() {
+            return new double[]{random.nextDouble() * width, random.nextDouble() * height,
+                    random.nextGaussian() * 3, random.nextGaussian() * 3};
+        }
+
+        DetectionBatch next() {
+            DetectionBatch detections = new DetectionBatch();
+            for (int k = objects.size() - 1; k >= 0; k--) {
+                if (random.nextDouble() < deathRate) {
+                    objects.remove(k);
+                    objects.add(newObject());
+                }
+            }
+            for (double[] object : objects) {
+                object[0] += object[2];
+                object[1] += object[3];
+                if (random.nextDouble() >= missRate) {
+                    detections.add(object[0] + random.nextGaussian() * noise,
+                            object[1] + random.nextGaussian() * noise);
+                }
+            }
+            for (int k = (int) (falseAlarms * random.nextDouble() * 2); k > 0; k--) {
+                detections.add(random.nextDouble() * width, random.nextDouble() * height);
+            }
+            return detections;
+        }
+    }
+
+    /**
+     * The tracker written the plain way, its Kalman filter aside.
+     */
+    private static final class ReferenceTracker {
+        final int distThresh, maxFramesToSkip, maxTraceLength;
+        double unassignedCost;
+        final ArrayList<Track> tracks = new ArrayList<>();
+        final TrackStore store = new TrackStore();
+        int trackIdCount;
+        long frame;
+
+        ReferenceTracker(int distThresh, int maxFramesToSkip, int maxTraceLength) {
+            this.distThresh = distThresh;
+            this.maxFramesToSkip = maxFramesToSkip;
+            this.maxTraceLength = maxTraceLength;
+            this.unassignedCost = distThresh;
+        }
+
+        void update(DetectionBatch detections) {
+            frame++;
+            if (tracks.isEmpty()) {
+                for (int j = 0; j < detections.size(); j++) {
+                    addTrack(detections, j);
+                }
+            }
+            List<Integer> assignment = assign(detections);
+
+            for (int i = 0; i < tracks.size(); i++) {
+                if (assignment.get(i) == -1) {
+                    tracks.get(i).addSkippedFrames();
+                }
+            }
+            for (int i = tracks.size() - 1; i >= 0; i--) {
+                if (tracks.get(i).getSkippedFrames() > maxFramesToSkip) {
+                    for (int k = i + 1; k < tracks.size(); k++) {
+                        store.move(k, k - 1);
+                        tracks.get(k).setSlot(k - 1);
+                    }
+                    store.truncate(tracks.size() - 1);
+                    tracks.remove(i);
+                    assignment.remove(i);
+                }
+            }
+
+            store.predictAll(0.005);
+            for (int j = 0; j < detections.size(); j++) {
+                if (!assignment.contains(j)) {
+                    addTrack(detections, j);
+                }
+            }
+            for (int i = 0; i < assignment.size(); i++) {
+                int j = assignment.get(i);
+                if (j != -1) {
+                    tracks.get(i).setSkippedFrames(0);
+                    store.correct(i, (int) detections.getX(j), (int) detections.getY(j));
+                }
+            }
+            // the tracks born in this frame get their first point at the next one
+            for (int i = 0; i < assignment.size(); i++) {
+                tracks.get(i).addPoint(frame);
+            }
+        }
+
+        /**
+         * Solve the dense problem with the Hungarian algorithm: the pairs
+         * beyond the gate cost more than leaving the track unassigned,
+         * which costs just above unassignedCost in the dummy detection of
+         * the track, so a pair at the edge of the gate is assigned.
+         */
+        List<Integer> assign(DetectionBatch detections) {
+            int n = tracks.size();
+            int m = detections.size();
+            List<Integer> assignment = new ArrayList<>();
+            if (n == 0) {
+                return assignment;
+            }
+            double forbidden = 2 * unassignedCost + 1;
+            double[][] costs = new double[n][m + n];
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < m; j++) {
+                    double dx = store.getX(i) - detections.getX(j);
+                    double dy = store.getY(i) - detections.getY(j);
+                    double cost = 0.5 * Math.sqrt(dx * dx + dy * dy);
+                    costs[i][j] = cost <= distThresh ? cost : forbidden;
+                }
+                for (int k = 0; k < n; k++) {
+                    costs[i][m + k] = k == i ? Math.nextUp(unassignedCost) : forbidden;
+                }
+            }
+            int[] solution = new HungarianAlgorithm(costs).execute();
+            for (int i = 0; i < n; i++) {
+                assignment.add(solution[i] < m ? solution[i] : -1);
+            }
+            return assignment;
+        }
+
+        void addTrack(DetectionBatch detections, int j) {
+            int slot = store.add(trackIdCount++, detections.getX(j), detections.getY(j));
+            tracks.add(new Track(store, slot, Math.max(1, maxTraceLength)));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TrackingServiceTest {
+
+    @Test
+    public void streamsTakeTurnsOnASingleThread() throws InterruptedException {
+        int streams = 3;
+        int batches = 12;
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(streams * batches);
+        try (TrackingService service = new TrackingService(1)) {
+            CountDownLatch release = new CountDownLatch(1);
+            String[] ids = new String[streams];
+            for (int s = 0; s < streams; s++) {
+                String id = ids[s] = "camera" + s;
+                service.register(id, new Tracker(10, 3, 5, 0), tracker -> {
+                    order.add(id);
+                    done.countDown();
+                });
+            }
+            // hold the only thread until every batch is queued
+            service.register("gate", new Tracker(10, 3, 5, 0), tracker -> awaitQuietly(release));
+            service.submit("gate", new DetectionBatch());
+            for (int k = 0; k < batches; k++) {
+                for (String id : ids) {
+                    service.submit(id, new DetectionBatch());
+                }
+            }
+            release.countDown();
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(streams * batches, order.size());
+        // the streams take turns, each applying a few batches per turn
+        int perTurn = 4;
+        for (int k = 0; k < order.size(); k++) {
+            assertEquals("batches applied in " + order, "camera" + (k / perTurn) % streams, order.get(k));
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}